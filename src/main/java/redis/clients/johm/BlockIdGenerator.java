@@ -0,0 +1,53 @@
+package redis.clients.johm;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * BlockIdGenerator reserves ids from the Class:id counter in blocks, with one
+ * INCRBY per block, and hands them out locally. Ids stay compatible with the
+ * default counter, but they are no longer in creation order across JVMs, and
+ * whatever is left of a block when the JVM stops is never used.
+ */
+public class BlockIdGenerator implements IdGenerator {
+	private final int blockSize;
+	private final ConcurrentMap<Class<?>, Block> blocks = new ConcurrentHashMap<Class<?>, Block>();
+
+	public BlockIdGenerator(int blockSize) {
+		if (blockSize <= 0) {
+			throw new JOhmException("Block size must be positive",
+			    JOhmExceptionMeta.ILLEGAL_ARGUMENT_EXCEPTION);
+		}
+		this.blockSize = blockSize;
+	}
+
+	public long nextId(Class<?> clazz) {
+		Block block = blocks.get(clazz);
+		if (block == null) {
+			block = new Block();
+			Block existing = blocks.putIfAbsent(clazz, block);
+			if (existing != null) {
+				block = existing;
+			}
+		}
+		return block.nextId(clazz);
+	}
+
+	/**
+	 * Ids next to last, last included, are free to use.
+	 */
+	private final class Block {
+		private long next = 1;
+		private long last = 0;
+
+		synchronized long nextId(Class<?> clazz) {
+			if (next > last) {
+				Nest nest = new Nest(clazz);
+				JOhm.setPool(nest);
+				last = nest.cat("id").incrBy(blockSize);
+				next = last - blockSize + 1;
+			}
+			return next++;
+		}
+	}
+}
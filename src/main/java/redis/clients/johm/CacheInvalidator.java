@@ -0,0 +1,126 @@
+package redis.clients.johm;
+
+import redis.clients.jedis.JedisPubSub;
+
+/**
+ * CacheInvalidator keeps a ModelCache in step with the writes of other JVMs.
+ * It subscribes to the channel set with JOhm.setInvalidationChannel() on the
+ * other nodes and drops the entry named by every message it receives, or the
+ * whole cache on a message of ALL, as sent by JOhm.purge().
+ *
+ * The subscription runs on its own daemon thread and holds one pooled
+ * connection. When the connection is lost it subscribes again after the retry
+ * delay. Messages published while it was away are lost, so the whole cache is
+ * flushed every time the subscription is (re)established.
+ */
+public class CacheInvalidator implements Runnable {
+	/**
+	 * The message asking for the whole cache to be dropped; no Class:id key
+	 * looks like it.
+	 */
+	public static final String ALL = "*";
+
+	private final ModelCache cache;
+	private final String channel;
+	private final long retryDelayMillis;
+	private final JedisPubSub subscriber = new Subscriber();
+	private volatile boolean running;
+	private Thread thread;
+
+	public CacheInvalidator(ModelCache cache, String channel) {
+		this(cache, channel, 1000);
+	}
+
+	public CacheInvalidator(ModelCache cache, String channel,
+	    long retryDelayMillis) {
+		if (cache == null || channel == null || retryDelayMillis < 0) {
+			throw new JOhmException(
+			    "CacheInvalidator needs a cache, a channel and a non-negative retry delay",
+			    JOhmExceptionMeta.ILLEGAL_ARGUMENT_EXCEPTION);
+		}
+		this.cache = cache;
+		this.channel = channel;
+		this.retryDelayMillis = retryDelayMillis;
+	}
+
+	public synchronized void start() {
+		if (running) {
+			return;
+		}
+		running = true;
+		thread = new Thread(this, "johm-cache-invalidator-" + channel);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	public synchronized void stop() {
+		running = false;
+		if (subscriber.isSubscribed()) {
+			subscriber.unsubscribe();
+		}
+		if (thread != null) {
+			thread.interrupt();
+			thread = null;
+		}
+	}
+
+	public boolean isSubscribed() {
+		return subscriber.isSubscribed();
+	}
+
+	public void run() {
+		while (running) {
+			try {
+				Nest nest = new Nest(channel);
+				JOhm.setPool(nest);
+				nest.subscribe(subscriber);
+			} catch (JOhmException e) {
+				// Nest already reported it; fall through and retry
+			}
+			if (!running) {
+				break;
+			}
+			try {
+				Thread.sleep(retryDelayMillis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+	}
+
+	private class Subscriber extends JedisPubSub {
+		@Override
+		public void onMessage(String channel, String message) {
+			if (ALL.equals(message)) {
+				cache.invalidateAll();
+			} else {
+				cache.invalidate(message);
+			}
+		}
+
+		@Override
+		public void onSubscribe(String channel, int subscribedChannels) {
+			cache.invalidateAll();
+			if (!running) {
+				unsubscribe();
+			}
+		}
+
+		@Override
+		public void onUnsubscribe(String channel, int subscribedChannels) {
+		}
+
+		@Override
+		public void onPMessage(String pattern, String channel, String message) {
+		}
+
+		@Override
+		public void onPSubscribe(String pattern, int subscribedChannels) {
+		}
+
+		@Override
+		public void onPUnsubscribe(String pattern, int subscribedChannels) {
+		}
+	}
+}
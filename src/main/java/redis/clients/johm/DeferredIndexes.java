@@ -0,0 +1,109 @@
+package redis.clients.johm;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.Multimap;
+
+import redis.clients.jedis.RedisPipeline;
+
+/**
+ * DeferredIndexes collects the index entries of many models grouped by index
+ * key, so that every set index key is written with one variadic SADD instead
+ * of one command per model. Entries are written in one pipeline once
+ * capacity of them are collected, and on flush().
+ */
+final class DeferredIndexes {
+	private final int capacity;
+	private Entries entries = new Entries();
+
+	DeferredIndexes(int capacity) {
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Collect the index entries of a model, keyed like in save().
+	 */
+	void add(final String member, final Multimap<String, String> sets,
+	    final Multimap<String, ScoreField> sortedSets) {
+		Entries full = null;
+		synchronized (this) {
+			for (Map.Entry<String, String> entry : sets.entries()) {
+				entries.addToSet(JOhm.isHashTag(entry.getKey()) ? entry.getValue()
+				    : entry.getKey(), member);
+			}
+			for (Map.Entry<String, ScoreField> entry : sortedSets.entries()) {
+				entries.addToSortedSet(JOhm.isHashTag(entry.getKey()) ? entry
+				    .getValue().getKey() : entry.getKey(), member, entry
+				    .getValue().getScore());
+			}
+			if (entries.size >= capacity) {
+				full = entries;
+				entries = new Entries();
+			}
+		}
+		if (full != null) {
+			JOhm.writeUsingPipeline(Collections.singletonList(full));
+		}
+	}
+
+	/**
+	 * Write every entry collected so far.
+	 */
+	void flush() {
+		Entries pending;
+		synchronized (this) {
+			pending = entries;
+			entries = new Entries();
+		}
+		if (pending.size > 0) {
+			JOhm.writeUsingPipeline(Collections.singletonList(pending));
+		}
+	}
+
+	private static final class Entries extends JOhm.PipelinedWrite {
+		final Map<String, List<String>> sets = new HashMap<String, List<String>>();
+		final Map<String, Map<String, Double>> sortedSets = new HashMap<String, Map<String, Double>>();
+		int size;
+
+		void addToSet(String key, String member) {
+			List<String> members = sets.get(key);
+			if (members == null) {
+				members = new ArrayList<String>();
+				sets.put(key, members);
+			}
+			members.add(member);
+			size++;
+		}
+
+		void addToSortedSet(String key, String member, Double score) {
+			Map<String, Double> members = sortedSets.get(key);
+			if (members == null) {
+				members = new HashMap<String, Double>();
+				sortedSets.put(key, members);
+			}
+			members.put(member, score);
+			size++;
+		}
+
+		void writeTo(RedisPipeline pipelined) {
+			for (Map.Entry<String, List<String>> set : sets.entrySet()) {
+				List<String> members = set.getValue();
+				pipelined.sadd(set.getKey(), members.toArray(new String[members
+				    .size()]));
+			}
+			// RedisPipeline has no ZADD of several members
+			for (Map.Entry<String, Map<String, Double>> sortedSet : sortedSets
+			    .entrySet()) {
+				for (Map.Entry<String, Double> member : sortedSet.getValue()
+				    .entrySet()) {
+					pipelined.zadd(sortedSet.getKey(), member.getValue(), member
+					    .getKey());
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,19 @@
+package redis.clients.johm;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Expire gives the models of a Model Class type a time to live. Every save
+ * sets the hash of the model to expire that many seconds later and records
+ * the expiry time in the sorted set Class:_expiry. Redis drops the hash on
+ * time, but not the ids left in the indexes; an ExpirySweeper removes those.
+ * Until it has, searches skip ids whose hash is gone.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Expire {
+	int value();
+}
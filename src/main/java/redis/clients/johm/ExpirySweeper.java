@@ -0,0 +1,113 @@
+package redis.clients.johm;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * ExpirySweeper removes models of an Expire-annotated Class type from their
+ * indexes once Redis has expired their hashes. Every interval it reads the ids
+ * due in Class:_expiry, batchSize at a time, keeps those whose hash is gone
+ * and deletes them with JOhm.deleteAll(), which cleans up their indexes, the
+ * all set and their IndexManifests from the manifests left behind.
+ *
+ * sweep() can also be called directly, for instance from a scheduler of the
+ * application, instead of starting the sweeper thread.
+ */
+public class ExpirySweeper implements Runnable {
+	private final Class<?> clazz;
+	private final long intervalMillis;
+	private final int batchSize;
+	private volatile boolean running;
+	private Thread thread;
+
+	public ExpirySweeper(Class<?> clazz) {
+		this(clazz, 1000, 1000);
+	}
+
+	public ExpirySweeper(Class<?> clazz, long intervalMillis, int batchSize) {
+		if (clazz == null || ModelExpiry.seconds(clazz) <= 0) {
+			throw new JOhmException(
+			    "ExpirySweeper needs a Model Class type annotated with Expire",
+			    JOhmExceptionMeta.ILLEGAL_ARGUMENT_EXCEPTION);
+		}
+		if (intervalMillis <= 0 || batchSize <= 0) {
+			throw new JOhmException("Interval and batch size must be positive",
+			    JOhmExceptionMeta.ILLEGAL_ARGUMENT_EXCEPTION);
+		}
+		this.clazz = clazz;
+		this.intervalMillis = intervalMillis;
+		this.batchSize = batchSize;
+	}
+
+	public synchronized void start() {
+		if (running) {
+			return;
+		}
+		running = true;
+		thread = new Thread(this, "johm-expiry-sweeper-"
+		    + clazz.getSimpleName());
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	public synchronized void stop() {
+		running = false;
+		if (thread != null) {
+			thread.interrupt();
+			thread = null;
+		}
+	}
+
+	public void run() {
+		while (running) {
+			try {
+				sweep();
+			} catch (JOhmException e) {
+				// Nest already reported it; try again next round
+			}
+			try {
+				Thread.sleep(intervalMillis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Remove every model due by now whose hash is gone.
+	 *
+	 * @return the number of ids removed
+	 */
+	public int sweep() {
+		Nest nest = new Nest(ModelExpiry.key(clazz));
+		JOhm.setPool(nest);
+		double now = System.currentTimeMillis();
+		int swept = 0;
+		// Due ids whose hash is still there, for instance because the clocks
+		// of Redis and this JVM differ, are stepped over
+		int offset = 0;
+		while (true) {
+			Set<String> due = nest.zrangebyscore(0, now, offset, batchSize);
+			if (due == null || due.isEmpty()) {
+				break;
+			}
+			List<String> expired = ModelExpiry.expired(clazz, due);
+			offset += due.size() - expired.size();
+			if (!expired.isEmpty()) {
+				long[] ids = new long[expired.size()];
+				for (int i = 0; i < ids.length; i++) {
+					ids[i] = Long.parseLong(expired.get(i));
+				}
+				JOhm.deleteAll(clazz, ids);
+				// Also ids deleteAll() found nothing for
+				nest.zrem(expired.toArray(new String[expired.size()]));
+				swept += expired.size();
+			}
+			if (due.size() < batchSize) {
+				break;
+			}
+		}
+		return swept;
+	}
+}
@@ -0,0 +1,49 @@
+package redis.clients.johm;
+
+/**
+ * FetchPlan tells JOhm how deep to follow the References of the models it
+ * loads. References are resolved level by level: all the ids needed at one
+ * level are read in a single pipeline and a model referenced several times is
+ * read only once per load.
+ * 
+ * A depth of 0 loads only the requested models and leaves their References
+ * null, a depth of 1 also loads their direct References, and so on.
+ */
+public final class FetchPlan {
+	/**
+	 * Follow every Reference, however deep the graph is. Cycles are loaded
+	 * once and wired to the same instances.
+	 */
+	public static final FetchPlan ALL = new FetchPlan(Integer.MAX_VALUE);
+
+	/**
+	 * Load the requested models only.
+	 */
+	public static final FetchPlan NONE = new FetchPlan(0);
+
+	private final int depth;
+
+	private FetchPlan(int depth) {
+		this.depth = depth;
+	}
+
+	public static FetchPlan depth(int depth) {
+		if (depth < 0) {
+			throw new JOhmException("Fetch depth cannot be negative",
+			    JOhmExceptionMeta.ILLEGAL_ARGUMENT_EXCEPTION);
+		}
+		return new FetchPlan(depth);
+	}
+
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * Check if References found on models of the given level should be loaded.
+	 * The requested models are at level 0.
+	 */
+	boolean follows(int level) {
+		return level < depth;
+	}
+}
@@ -0,0 +1,8 @@
+package redis.clients.johm;
+
+/**
+ * How a Reference is loaded along with the model owning it.
+ */
+public enum FetchType {
+    EAGER, LAZY;
+}
@@ -0,0 +1,269 @@
+package redis.clients.johm;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import redis.clients.jedis.RedisPipeline;
+import redis.clients.jedis.Response;
+
+/**
+ * FindPlanner decides how find() evaluates a search on several fields. The
+ * size of every EQUALS set and of every range is read first, with SCARD and
+ * ZCOUNT in one pipeline. If one of them is empty the search is answered
+ * right away. If the smallest, the driver, holds at most probeLimit ids, they
+ * are read and every other condition is checked for each of them with
+ * SISMEMBER and ZSCORE in one more pipeline. Otherwise find() evaluates the
+ * search in Redis, from the most selective condition on.
+ */
+final class FindPlanner {
+	/**
+	 * A range condition: the sorted set indexing the field and the bounds,
+	 * in ZRANGEBYSCORE syntax.
+	 */
+	static final class Range {
+		final String key;
+		final String min;
+		final String max;
+
+		Range(String key, String min, String max) {
+			this.key = key;
+			this.min = min;
+			this.max = max;
+		}
+
+		/**
+		 * Remove the members outside of the range from a copy of the sorted set.
+		 */
+		void trim(final Nest copy) {
+			if (!isInfinite(min)) {
+				copy.zremrangebyscore("-inf", exclude(min));
+			}
+			if (!isInfinite(max)) {
+				copy.zremrangebyscore(exclude(max), "+inf");
+			}
+		}
+
+		boolean contains(final Double score) {
+			if (score == null) {
+				return false;
+			}
+			if (!isInfinite(min)) {
+				double bound = bound(min);
+				if (isExclusive(min) ? score <= bound : score < bound) {
+					return false;
+				}
+			}
+			if (!isInfinite(max)) {
+				double bound = bound(max);
+				if (isExclusive(max) ? score >= bound : score > bound) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * The bounds as numbers, for ZCOUNT, which RedisPipeline only takes
+		 * numbers for. Exclusive bounds count as inclusive, which can only
+		 * overestimate the size of the range.
+		 */
+		double lowest() {
+			return isInfinite(min) ? -Double.MAX_VALUE : bound(min);
+		}
+
+		double highest() {
+			return isInfinite(max) ? Double.MAX_VALUE : bound(max);
+		}
+
+		private static boolean isInfinite(String bound) {
+			return bound.endsWith("inf");
+		}
+
+		private static boolean isExclusive(String bound) {
+			return bound.startsWith("(");
+		}
+
+		private static double bound(String bound) {
+			return Double.parseDouble(isExclusive(bound) ? bound.substring(1)
+			    : bound);
+		}
+
+		/**
+		 * The bound that removes exactly what the given bound keeps.
+		 */
+		private static String exclude(String bound) {
+			return isExclusive(bound) ? bound.substring(1) : "(" + bound;
+		}
+	}
+
+	private final List<String> equalsKeys;
+	private final List<Range> ranges;
+	private final List<String> notEqualsKeys;
+	private final Map<Object, Long> sizes = new IdentityHashMap<Object, Long>();
+
+	FindPlanner(List<String> equalsKeys, List<Range> ranges,
+	    List<String> notEqualsKeys) {
+		this.equalsKeys = equalsKeys;
+		this.ranges = ranges;
+		this.notEqualsKeys = notEqualsKeys;
+	}
+
+	/**
+	 * Read the size of every condition in one pipeline. Range bounds that are
+	 * not numbers are left to Redis to judge, so the planner steps aside.
+	 */
+	void count() {
+		for (Range range : ranges) {
+			try {
+				range.contains(0d);
+			} catch (NumberFormatException e) {
+				return;
+			}
+		}
+		final Map<Object, Response<Long>> responses = new IdentityHashMap<Object, Response<Long>>();
+		JOhm.writeUsingPipeline(Collections.singletonList(new JOhm.PipelinedWrite() {
+			void writeTo(RedisPipeline pipelined) {
+				for (String key : equalsKeys) {
+					responses.put(key, pipelined.scard(key));
+				}
+				for (Range range : ranges) {
+					responses.put(range, pipelined.zcount(range.key, range.lowest(),
+					    range.highest()));
+				}
+			}
+		}));
+		for (Map.Entry<Object, Response<Long>> response : responses.entrySet()) {
+			sizes.put(response.getKey(), response.getValue().get());
+		}
+	}
+
+	boolean isCounted() {
+		return !sizes.isEmpty();
+	}
+
+	/**
+	 * Whether some condition matches nothing, and so the whole search.
+	 */
+	boolean isEmpty() {
+		return sizes.containsValue(Long.valueOf(0));
+	}
+
+	boolean shouldProbe(int probeLimit) {
+		Object driver = driver();
+		return driver != null && sizes.get(driver) <= probeLimit;
+	}
+
+	/**
+	 * The EQUALS keys, smallest first.
+	 */
+	List<String> equalsKeysBySize() {
+		return bySize(equalsKeys);
+	}
+
+	/**
+	 * The ranges, most selective first.
+	 */
+	List<Range> rangesBySize() {
+		return bySize(ranges);
+	}
+
+	/**
+	 * Read the ids of the driver and keep those that meet every other
+	 * condition, checked in one pipeline.
+	 */
+	Set<String> probe() {
+		final Object driver = driver();
+		Set<String> candidates;
+		if (driver instanceof Range) {
+			Range range = (Range) driver;
+			Nest nest = new Nest(range.key);
+			JOhm.setPool(nest);
+			candidates = nest.zrangebyscore(range.min, range.max);
+		} else {
+			Nest nest = new Nest((String) driver);
+			JOhm.setPool(nest);
+			candidates = nest.smembers();
+		}
+		Set<String> matches = new HashSet<String>();
+		if (candidates == null || candidates.isEmpty()) {
+			return matches;
+		}
+		final List<String> ids = new ArrayList<String>(candidates);
+		final List<Response<Boolean>> memberships = new ArrayList<Response<Boolean>>();
+		final List<Response<Boolean>> exclusions = new ArrayList<Response<Boolean>>();
+		final List<Response<Double>> scores = new ArrayList<Response<Double>>();
+		final List<Range> scoredRanges = new ArrayList<Range>();
+		JOhm.writeUsingPipeline(Collections.singletonList(new JOhm.PipelinedWrite() {
+			void writeTo(RedisPipeline pipelined) {
+				for (String id : ids) {
+					// The driver is told apart by identity, like in sizes
+					for (String key : equalsKeys) {
+						if (key != driver) {
+							memberships.add(pipelined.sismember(key, id));
+						}
+					}
+					for (String key : notEqualsKeys) {
+						exclusions.add(pipelined.sismember(key, id));
+					}
+					for (Range range : ranges) {
+						if (range != driver) {
+							scores.add(pipelined.zscore(range.key, id));
+							scoredRanges.add(range);
+						}
+					}
+				}
+			}
+		}));
+
+		// Every id has the same checks queued, in the same order
+		int perIdMemberships = memberships.size() / ids.size();
+		int perIdExclusions = exclusions.size() / ids.size();
+		int perIdScores = scores.size() / ids.size();
+		for (int i = 0; i < ids.size(); i++) {
+			boolean match = true;
+			for (int j = i * perIdMemberships; match
+			    && j < (i + 1) * perIdMemberships; j++) {
+				match = Boolean.TRUE.equals(memberships.get(j).get());
+			}
+			for (int j = i * perIdExclusions; match
+			    && j < (i + 1) * perIdExclusions; j++) {
+				match = !Boolean.TRUE.equals(exclusions.get(j).get());
+			}
+			for (int j = i * perIdScores; match && j < (i + 1) * perIdScores; j++) {
+				match = scoredRanges.get(j).contains(scores.get(j).get());
+			}
+			if (match) {
+				matches.add(ids.get(i));
+			}
+		}
+		return matches;
+	}
+
+	private Object driver() {
+		Object driver = null;
+		for (Map.Entry<Object, Long> size : sizes.entrySet()) {
+			if (driver == null || size.getValue() < sizes.get(driver)) {
+				driver = size.getKey();
+			}
+		}
+		return driver;
+	}
+
+	private <T> List<T> bySize(List<T> conditions) {
+		List<T> sorted = new ArrayList<T>(conditions);
+		if (isCounted()) {
+			Collections.sort(sorted, new Comparator<T>() {
+				public int compare(T one, T other) {
+					return sizes.get(one).compareTo(sizes.get(other));
+				}
+			});
+		}
+		return sorted;
+	}
+}
@@ -0,0 +1,16 @@
+package redis.clients.johm;
+
+/**
+ * IdGenerator hands out the ids of new models. By default JOhm increments the
+ * Class:id counter in Redis once per new model; an IdGenerator configured with
+ * JOhm.setIdGenerator() replaces that for a Class type or for all of them.
+ * 
+ * Implementations must be thread-safe and must never return the same id twice
+ * for a Class type, across every JVM writing to the same Redis.
+ */
+public interface IdGenerator {
+	/**
+	 * The id of the next new model of the given Class type.
+	 */
+	long nextId(Class<?> clazz);
+}
@@ -0,0 +1,179 @@
+package redis.clients.johm;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.Multimap;
+
+import redis.clients.jedis.RedisPipeline;
+
+/**
+ * IndexManifest records, next to the hash of every saved model, the exact set
+ * and sorted set keys the model was indexed under. It lives in the set
+ * Class:id:_indexes, one member per index key prefixed with s:, or with z:
+ * and the score of the model for a sorted set, and is rewritten whole along
+ * with every save. Updates and deletes read it back in
+ * one command instead of reloading the model and its References to work out
+ * where it was indexed, which also stays right after the indexed attribute of
+ * a referenced model has changed.
+ *
+ * Models saved before manifests existed have none; they are cleaned up by
+ * reloading them, as before.
+ */
+final class IndexManifest {
+	static final String SUFFIX = "_indexes";
+	private static final String SET = "s:";
+	private static final String SORTED_SET = "z:";
+
+	private IndexManifest() {
+	}
+
+	/**
+	 * The manifest key of the model stored in the given hash key.
+	 */
+	static String key(final String hashKey) {
+		return hashKey + ":" + SUFFIX;
+	}
+
+	static String key(final Class<?> clazz, final long id) {
+		return key(new Nest(clazz).cat(id).key());
+	}
+
+	/**
+	 * The manifest members describing the given snapshot.
+	 */
+	static List<String> entries(final ModelState.Snapshot snapshot) {
+		List<String> entries = new ArrayList<String>(snapshot.sets.size()
+		    + snapshot.sortedSets.size());
+		for (String set : snapshot.sets) {
+			entries.add(SET + set);
+		}
+		for (Map.Entry<String, Double> sortedSet : snapshot.sortedSets.entrySet()) {
+			entries.add(SORTED_SET + sortedSet.getValue() + ":"
+			    + sortedSet.getKey());
+		}
+		return entries;
+	}
+
+	/**
+	 * Replace the manifest with the given entries.
+	 */
+	static void writeTo(final RedisPipeline pipelined, final String key,
+	    final List<String> entries) {
+		pipelined.del(key);
+		if (!entries.isEmpty()) {
+			pipelined.sadd(key, entries.toArray(new String[entries.size()]));
+		}
+	}
+
+	static JOhm.PipelinedWrite write(final String key,
+	    final ModelState.Snapshot snapshot) {
+		final List<String> entries = entries(snapshot);
+		return new JOhm.PipelinedWrite() {
+			void writeTo(RedisPipeline pipelined) {
+				IndexManifest.writeTo(pipelined, key, entries);
+			}
+		};
+	}
+
+	/**
+	 * Feed the removal multimaps of a model from its manifest, keyed the way
+	 * feedCleanupData() keys them. Returns false when the model has no
+	 * manifest.
+	 */
+	static boolean feed(final Class<?> clazz, final long id,
+	    final Multimap<String, String> memberToBeRemovedFromSets,
+	    final Multimap<String, ScoreField> memberToBeRemovedFromSortedSets) {
+		Nest nest = new Nest(key(clazz, id));
+		JOhm.setPool(nest);
+		return feed(nest.smembers(), String.valueOf(id),
+		    memberToBeRemovedFromSets, memberToBeRemovedFromSortedSets);
+	}
+
+	private static boolean feed(final Collection<String> entries, final String member,
+	    final Multimap<String, String> memberToBeRemovedFromSets,
+	    final Multimap<String, ScoreField> memberToBeRemovedFromSortedSets) {
+		if (entries == null || entries.isEmpty()) {
+			return false;
+		}
+		for (String entry : entries) {
+			if (entry.startsWith(SET)) {
+				String set = entry.substring(SET.length());
+				String hashTag = hashTagOf(set);
+				if (hashTag != null) {
+					memberToBeRemovedFromSets.put(hashTag, set);
+				} else {
+					memberToBeRemovedFromSets.put(set, member);
+				}
+			} else if (entry.startsWith(SORTED_SET)) {
+				String sortedSet = sortedSetOf(entry);
+				String hashTag = hashTagOf(sortedSet);
+				// The score is kept for a rolled back delete to restore
+				memberToBeRemovedFromSortedSets.put(hashTag != null ? hashTag
+				    : sortedSet, new ScoreField(sortedSet, scoreOf(entry)));
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * The hashTag part of an index key, as Redis picks it: from the first {
+	 * to the next }.
+	 */
+	static String hashTagOf(final String key) {
+		int start = key.indexOf('{');
+		if (start < 0) {
+			return null;
+		}
+		int end = key.indexOf('}', start + 1);
+		return end < 0 ? null : key.substring(start, end + 1);
+	}
+
+	/**
+	 * Split manifest entries into the set keys and the sorted set keys they
+	 * name.
+	 */
+	static void split(final Collection<String> entries,
+	    final Collection<String> sets, final Collection<String> sortedSets) {
+		for (String entry : entries) {
+			if (entry.startsWith(SET)) {
+				sets.add(entry.substring(SET.length()));
+			} else if (entry.startsWith(SORTED_SET)) {
+				sortedSets.add(sortedSetOf(entry));
+			}
+		}
+	}
+
+	/**
+	 * The snapshot of a model persisted as the given hash and indexed as its
+	 * manifest entries tell.
+	 */
+	static ModelState.Snapshot snapshot(final Map<String, String> hash,
+	    final Collection<String> entries) {
+		List<String> sets = new ArrayList<String>();
+		Map<String, Double> sortedSets = new HashMap<String, Double>();
+		for (String entry : entries) {
+			if (entry.startsWith(SET)) {
+				sets.add(entry.substring(SET.length()));
+			} else if (entry.startsWith(SORTED_SET)) {
+				sortedSets.put(sortedSetOf(entry), scoreOf(entry));
+			}
+		}
+		return ModelState.Snapshot.of(hash, sets, sortedSets);
+	}
+
+	/**
+	 * The key of a z:score:key entry; a score never holds a colon.
+	 */
+	private static String sortedSetOf(final String entry) {
+		return entry.substring(entry.indexOf(':', SORTED_SET.length()) + 1);
+	}
+
+	private static Double scoreOf(final String entry) {
+		return Double.valueOf(entry.substring(SORTED_SET.length(), entry
+		    .indexOf(':', SORTED_SET.length())));
+	}
+}
@@ -4,9 +4,12 @@ import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -18,10 +21,12 @@ import com.google.common.collect.Multimap;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.RedisPipeline;
 import redis.clients.jedis.Response;
 import redis.clients.jedis.ShardedJedis;
 import redis.clients.jedis.ShardedJedisPipeline;
 import redis.clients.jedis.ShardedJedisPool;
+import redis.clients.jedis.SortingParams;
 import redis.clients.jedis.Transaction;
 import redis.clients.jedis.ZParams;
 import redis.clients.johm.NVField.Condition;
@@ -36,6 +41,14 @@ public final class JOhm {
 	private static JedisPool jedisPool;
 	private static ShardedJedisPool shardedJedisPool;
 	private static boolean isSharded;
+	private static volatile ModelCache cache;
+	private static volatile QueryCache queryCache;
+	private static volatile String invalidationChannel;
+	private static volatile IdGenerator defaultIdGenerator;
+	private static volatile boolean scriptedSave;
+	private static volatile int findProbeLimit = 64;
+	private static final ConcurrentHashMap<Class<?>, IdGenerator> idGenerators = new ConcurrentHashMap<Class<?>, IdGenerator>();
+	private static final ConcurrentHashMap<Class<?>, WriteBehindBuffer> writeBehindBuffers = new ConcurrentHashMap<Class<?>, WriteBehindBuffer>();
 
 	private static final String INF_PLUS = "+inf";
 	private static final String INF_MINUS = "-inf";
@@ -56,7 +69,7 @@ public final class JOhm {
 		return JOhmUtils.isNew(model);
 	}
 
-	private static void setPool(Nest nest) {
+	static void setPool(Nest nest) {
 		if (isSharded) {
 			nest.setJedisPool(shardedJedisPool, true);
 		} else {
@@ -79,29 +92,418 @@ public final class JOhm {
 	 * @param id
 	 * @return
 	 */
-	@SuppressWarnings("unchecked")
 	public static <T> T get(Class<?> clazz, long id) {
+		List<T> loaded = JOhm.<T> get(clazz, new long[] { id });
+		if (loaded.isEmpty()) {
+			return null;
+		}
+		return loaded.get(0);
+	}
+
+	/**
+	 * Load the model persisted in Redis looking it up by its id and Class type,
+	 * following its References as deep as the given FetchPlan allows.
+	 * 
+	 * @param <T>
+	 * @param clazz
+	 * @param id
+	 * @param fetchPlan
+	 * @return
+	 */
+	public static <T> T get(Class<?> clazz, long id, FetchPlan fetchPlan) {
+		List<T> loaded = JOhm.<T> get(clazz, fetchPlan, new long[] { id });
+		if (loaded.isEmpty()) {
+			return null;
+		}
+		return loaded.get(0);
+	}
+
+	/**
+	 * Load only the named fields of a persisted model. Attributes and
+	 * References are read with a single HMGET; Arrays and collections are only
+	 * read or set up when they are named. The returned model is partial and
+	 * cannot be saved, since that would wipe the fields that were not loaded.
+	 * 
+	 * @param <T>
+	 * @param clazz
+	 * @param id
+	 * @param fieldNames
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> T get(Class<?> clazz, long id, String... fieldNames) {
 		JOhmUtils.Validator.checkValidModelClazz(clazz);
+		Map<String, Field> allFields = new HashMap<String, Field>();
+		for (Field field : JOhmUtils.gatherAllFields(clazz)) {
+			allFields.put(field.getName(), field);
+		}
+
+		List<Field> hashedFields = new ArrayList<Field>();
+		List<String> hashKeys = new ArrayList<String>();
+		Set<String> loadedFields = new HashSet<String>();
+		for (String fieldName : fieldNames) {
+			Field field = allFields.get(fieldName);
+			if (field == null) {
+				throw new JOhmException(new InvalidFieldException(),
+				    JOhmExceptionMeta.NO_SUCH_FIELD_EXCEPTION);
+			}
+			field.setAccessible(true);
+			loadedFields.add(fieldName);
+			if (field.isAnnotationPresent(Attribute.class)) {
+				hashedFields.add(field);
+				hashKeys.add(fieldName);
+			} else if (field.isAnnotationPresent(Reference.class)) {
+				hashedFields.add(field);
+				hashKeys.add(JOhmUtils.getReferenceKeyName(field));
+			}
+		}
 
 		Nest nest = new Nest(clazz);
 		setPool(nest);
-		if (!nest.cat(id).exists()) {
+		List<String> values = null;
+		ModelCache modelCache = cache;
+		Map<String, String> cachedObject = modelCache == null ? null
+		    : modelCache.get(ModelCache.key(clazz, id));
+		if (cachedObject != null) {
+			values = new ArrayList<String>();
+			for (String hashKey : hashKeys) {
+				values.add(cachedObject.get(hashKey));
+			}
+		} else if (hashKeys.isEmpty()) {
+			if (nest.cat(id).exists()) {
+				values = new ArrayList<String>();
+			}
+		} else {
+			values = nest.cat(id).hmget(hashKeys.toArray(new String[hashKeys.size()]));
+		}
+		if (values == null) {
+			return null;
+		}
+
+		Object newInstance;
+		try {
+			newInstance = clazz.newInstance();
+			JOhmUtils.loadId(newInstance, id);
+			JOhmUtils.initCollections(newInstance, nest, loadedFields);
+			for (int i = 0; i < hashedFields.size(); i++) {
+				Field field = hashedFields.get(i);
+				String value = values.get(i);
+				if (value == null) {
+					continue;
+				}
+				if (field.isAnnotationPresent(Attribute.class)) {
+					field.set(newInstance, JOhmUtils.Convertor.convert(field, value));
+				} else if (JOhmUtils.isLazyReference(field)) {
+					field.set(newInstance, LazyReference.unloaded(
+					    JOhmUtils.getReferenceClass(field), Long.parseLong(value)));
+				} else {
+					field.set(newInstance, get(field.getType(), Long.parseLong(value)));
+				}
+			}
+			for (String fieldName : loadedFields) {
+				fillArrayField(nest, newInstance, allFields.get(fieldName));
+			}
+		} catch (InstantiationException e) {
+			throw new JOhmException(e, JOhmExceptionMeta.INSTANTIATION_EXCEPTION);
+		} catch (IllegalAccessException e) {
+			throw new JOhmException(e, JOhmExceptionMeta.ILLEGAL_ACCESS_EXCEPTION);
+		}
+		ModelState.of(newInstance).loadedFields = loadedFields;
+		return (T) newInstance;
+	}
+
+	/**
+	 * Load several models of the same Class type in one go. All the hashes are
+	 * read with a single pipeline (grouped per shard when sharded) and an empty
+	 * hash is treated as a missing model. The returned list follows the order
+	 * of the given ids and skips the ids that were not found.
+	 * 
+	 * @param <T>
+	 * @param clazz
+	 * @param ids
+	 * @return
+	 */
+	public static <T> List<T> get(Class<?> clazz, long... ids) {
+		return JOhm.<T> get(clazz, FetchPlan.ALL, ids);
+	}
+
+	/**
+	 * Load several models of the same Class type in one go, following their
+	 * References as deep as the given FetchPlan allows. Each level of the
+	 * reference graph costs one pipelined round trip.
+	 * 
+	 * @param <T>
+	 * @param clazz
+	 * @param fetchPlan
+	 * @param ids
+	 * @return
+	 */
+	public static <T> List<T> get(Class<?> clazz, FetchPlan fetchPlan,
+	    long... ids) {
+		JOhmSession session = JOhmSession.current();
+		if (session != null) {
+			return JOhm.<T> load(clazz, fetchPlan, ids, session.identityMap(),
+			    cache, true);
+		}
+		return JOhm.<T> load(clazz, fetchPlan, ids,
+		    new HashMap<String, Object>(), cache, true);
+	}
+
+	/**
+	 * Read the model as it is persisted right now, bypassing the session and
+	 * the near cache. Used to find the indexes a save or delete has to clean.
+	 */
+	private static Object getPersisted(Class<?> clazz, long id) {
+		List<Object> loaded = JOhm.<Object> load(clazz, FetchPlan.ALL,
+		    new long[] { id }, new HashMap<String, Object>(), null, false);
+		if (loaded.isEmpty()) {
 			return null;
 		}
+		return loaded.get(0);
+	}
+
+	/**
+	 * Load models level by level into the given identity map, where a null
+	 * value marks a missing model. Tracked models get a snapshot of their
+	 * persisted hash and IndexManifest, for save() to diff against.
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T> List<T> load(Class<?> clazz, FetchPlan fetchPlan,
+	    long[] ids, Map<String, Object> loaded, ModelCache modelCache,
+	    boolean track) {
+		JOhmUtils.Validator.checkValidModelClazz(clazz);
+		List<T> results = new ArrayList<T>();
+		if (ids == null || ids.length == 0) {
+			return results;
+		}
+
+		List<PendingReference> level = new ArrayList<PendingReference>();
+		for (long id : ids) {
+			level.add(new PendingReference(clazz, id, null, null));
+		}
+
+		List<Object> allFresh = new ArrayList<Object>();
+		Map<Object, Map<String, String>> allHashes = new IdentityHashMap<Object, Map<String, String>>();
+		Map<Object, Long> deletionsSeen = new IdentityHashMap<Object, Long>();
+		int depth = 0;
+		while (!level.isEmpty()) {
+			List<Object> fresh = new ArrayList<Object>();
+			Map<Object, Map<String, String>> freshHashes = new IdentityHashMap<Object, Map<String, String>>();
+			fetchLevel(level, loaded, fresh, freshHashes, deletionsSeen,
+			    modelCache);
+			allFresh.addAll(fresh);
+			allHashes.putAll(freshHashes);
+
+			List<PendingReference> nextLevel = new ArrayList<PendingReference>();
+			try {
+				for (PendingReference pending : level) {
+					Object model = loaded.get(pending.key);
+					if (pending.owner == null) {
+						if (model != null) {
+							results.add((T) model);
+						}
+					} else {
+						pending.field.set(pending.owner, model);
+					}
+				}
+				for (Object model : fresh) {
+					collectReferences(model, freshHashes.get(model), nextLevel,
+					    fetchPlan.follows(depth));
+				}
+			} catch (IllegalAccessException e) {
+				throw new JOhmException(e, JOhmExceptionMeta.ILLEGAL_ACCESS_EXCEPTION);
+			}
+			level = nextLevel;
+			depth++;
+		}
+		if (track) {
+			takeSnapshots(allFresh, allHashes, deletionsSeen);
+		}
+		return results;
+	}
+
+	/**
+	 * Remember what freshly loaded models look like in Redis: the hash each
+	 * was loaded from and the index entries its IndexManifest lists, read in
+	 * one pipeline. Nothing is worked out from the models themselves, whose
+	 * References may not be loaded. Models without a manifest are left
+	 * without a snapshot and are saved the old way.
+	 */
+	private static void takeSnapshots(final List<Object> loaded,
+	    final Map<Object, Map<String, String>> hashes,
+	    final Map<Object, Long> deletionsSeen) {
+		// Expiring models are always saved in full, see ModelState.snapshot()
+		List<Object> models = new ArrayList<Object>(loaded.size());
+		for (Object model : loaded) {
+			if (ModelExpiry.seconds(model.getClass()) <= 0) {
+				models.add(model);
+			}
+		}
+		if (models.isEmpty()) {
+			return;
+		}
+		List<String> manifestKeys = new ArrayList<String>(models.size());
+		for (Object model : models) {
+			manifestKeys.add(IndexManifest.key(model.getClass(), JOhmUtils
+			    .getId(model)));
+		}
+		Nest nest = new Nest();
+		setPool(nest);
+		List<Set<String>> manifests = nest.smembers(manifestKeys);
+		for (int i = 0; i < models.size(); i++) {
+			Set<String> manifest = manifests.get(i);
+			if (manifest == null || manifest.isEmpty()) {
+				continue;
+			}
+			Object model = models.get(i);
+			ModelState.remember(model, IndexManifest.snapshot(hashes.get(model),
+			    manifest), deletionsSeen.get(model));
+		}
+	}
+
+	/**
+	 * Read all the models a level needs and that were not loaded yet with one
+	 * pipeline, and hydrate them without their References.
+	 */
+	private static void fetchLevel(List<PendingReference> level,
+	    Map<String, Object> loaded, List<Object> fresh,
+	    Map<Object, Map<String, String>> freshHashes,
+	    Map<Object, Long> deletionsSeen, ModelCache modelCache) {
+		Map<String, PendingReference> toFetch = new LinkedHashMap<String, PendingReference>();
+		for (PendingReference pending : level) {
+			if (!loaded.containsKey(pending.key)
+			    && !toFetch.containsKey(pending.key)) {
+				toFetch.put(pending.key, pending);
+			}
+		}
+		if (toFetch.isEmpty()) {
+			return;
+		}
+
+		// Counted before reading, so that a deletion racing the read drops the
+		// snapshot
+		Map<String, Long> deletions = new HashMap<String, Long>();
+		for (PendingReference pending : toFetch.values()) {
+			deletions.put(pending.key,
+			    ModelState.deletions(pending.clazz, pending.id));
+		}
+		List<String> keys = new ArrayList<String>();
+		for (PendingReference pending : toFetch.values()) {
+			Map<String, String> hashedObject = modelCache == null ? null
+			    : modelCache.get(pending.key);
+			if (hashedObject == null) {
+				keys.add(pending.key);
+			} else {
+				hydrateFetched(pending, hashedObject, loaded, fresh, freshHashes);
+				deletionsSeen.put(loaded.get(pending.key),
+				    deletions.get(pending.key));
+			}
+		}
+		if (keys.isEmpty()) {
+			return;
+		}
+
+		long[] generations = new long[keys.size()];
+		if (modelCache != null) {
+			for (int i = 0; i < generations.length; i++) {
+				generations[i] = modelCache.generation(keys.get(i));
+			}
+		}
+		Nest nest = new Nest();
+		setPool(nest);
+		List<Map<String, String>> hashedObjects = nest.hgetAll(keys);
+		for (int i = 0; i < keys.size(); i++) {
+			PendingReference pending = toFetch.get(keys.get(i));
+			Map<String, String> hashedObject = hashedObjects.get(i);
+			if (hashedObject == null || hashedObject.isEmpty()) {
+				loaded.put(pending.key, null);
+				continue;
+			}
+			if (modelCache != null) {
+				modelCache.put(pending.key, hashedObject, generations[i]);
+			}
+			hydrateFetched(pending, hashedObject, loaded, fresh, freshHashes);
+			deletionsSeen.put(loaded.get(pending.key), deletions.get(pending.key));
+		}
+	}
+
+	private static void hydrateFetched(PendingReference pending,
+	    Map<String, String> hashedObject, Map<String, Object> loaded,
+	    List<Object> fresh, Map<Object, Map<String, String>> freshHashes) {
+		Object model = hydrate(pending.clazz, pending.id, hashedObject);
+		loaded.put(pending.key, model);
+		fresh.add(model);
+		freshHashes.put(model, hashedObject);
+	}
+
+	/**
+	 * Queue the References of a freshly loaded model for the next level. Lazy
+	 * References only get their holder, whatever the depth.
+	 */
+	private static void collectReferences(Object model,
+	    Map<String, String> hashedObject, List<PendingReference> nextLevel,
+	    boolean follow) throws IllegalAccessException {
+		for (Field field : JOhmUtils.gatherAllFields(model.getClass())) {
+			if (!field.isAnnotationPresent(Reference.class)) {
+				continue;
+			}
+			field.setAccessible(true);
+			String serializedReferenceId = hashedObject.get(JOhmUtils
+			    .getReferenceKeyName(field));
+			if (serializedReferenceId == null) {
+				continue;
+			}
+			long referenceId = Long.parseLong(serializedReferenceId);
+			if (JOhmUtils.isLazyReference(field)) {
+				field.set(model, LazyReference.unloaded(
+				    JOhmUtils.getReferenceClass(field), referenceId));
+			} else if (follow) {
+				nextLevel.add(new PendingReference(field.getType(), referenceId,
+				    model, field));
+			}
+		}
+	}
+
+	/**
+	 * A model still to be loaded, along with the Reference field it has to be
+	 * set on. Requested models have no owner.
+	 */
+	private static final class PendingReference {
+		final Class<?> clazz;
+		final long id;
+		final Object owner;
+		final Field field;
+		final String key;
+
+		PendingReference(Class<?> clazz, long id, Object owner, Field field) {
+			this.clazz = clazz;
+			this.id = id;
+			this.owner = owner;
+			this.field = field;
+			this.key = clazz.getSimpleName() + ":" + id;
+		}
+	}
 
+	/**
+	 * Build a model from its persisted hash. References are left for the
+	 * caller to resolve.
+	 */
+	private static Object hydrate(Class<?> clazz, long id,
+	    Map<String, String> hashedObject) {
+		Nest nest = new Nest(clazz);
+		setPool(nest);
 		Object newInstance;
 		try {
 			newInstance = clazz.newInstance();
 			JOhmUtils.loadId(newInstance, id);
 			JOhmUtils.initCollections(newInstance, nest);
 
-			Map<String, String> hashedObject = nest.cat(id).hgetAll();
 			for (Field field : JOhmUtils.gatherAllFields(clazz)) {
 				fillField(hashedObject, newInstance, field);
 				fillArrayField(nest, newInstance, field);
 			}
 
-			return (T) newInstance;
+			return newInstance;
 		} catch (InstantiationException e) {
 			throw new JOhmException(e, JOhmExceptionMeta.INSTANTIATION_EXCEPTION);
 		} catch (IllegalAccessException e) {
@@ -109,6 +511,15 @@ public final class JOhm {
 		}
 	}
 
+	private static long[] toIds(Collection<String> modelIdStrings) {
+		long[] ids = new long[modelIdStrings.size()];
+		int i = 0;
+		for (String modelIdString : modelIdStrings) {
+			ids[i++] = Long.parseLong(modelIdString);
+		}
+		return ids;
+	}
+
 	/**
 	 * Search a Model in redis index using its attribute's given name/value pair.
 	 * This can potentially return more than 1 matches if some indexed Model's
@@ -129,16 +540,82 @@ public final class JOhm {
 	@SuppressWarnings("unchecked")
 	public static <T> List<T> find(Class<?> clazz, String attributeName,
 	    Object attributeValue, String hashTag) {
-		JOhmUtils.Validator.checkValidModelClazz(clazz);
 		List<Object> results = null;
+		Nest nest = new Nest(indexKey(clazz, attributeName, attributeValue,
+		    hashTag));
+		setPool(nest);
+		Set<String> modelIdStrings = nest.smembers();
+		if (modelIdStrings != null) {
+			// findLazy() pages through large results instead
+			results = JOhm.<Object> get(clazz, toIds(modelIdStrings));
+		}
+		return (List<T>) results;
+	}
+
+	/**
+	 * Search a Model in redis index like find(clazz, attributeName,
+	 * attributeValue, hashTag), without reading the matches up front. The
+	 * index set is walked with SSCAN as the results are iterated and the
+	 * matches are loaded pageSize at a time, each page with one pipeline.
+	 * 
+	 * @param clazz
+	 *          Class of Model annotated-type to search
+	 * @param attributeName
+	 *          Name of Model's attribute to search
+	 * @param attributeValue
+	 *          Attribute's value to search in index
+	 * @param hashTag
+	 * @param fetchPlan
+	 *          How deep the References of the matches are loaded
+	 * @param pageSize
+	 *          How many matches are loaded at a time
+	 * @return
+	 */
+	public static <T> LazyResults<T> findLazy(Class<?> clazz,
+	    String attributeName, Object attributeValue, String hashTag,
+	    FetchPlan fetchPlan, int pageSize) {
+		return LazyResults.<T> scanning(clazz, fetchPlan, indexKey(clazz,
+		    attributeName, attributeValue, hashTag), pageSize);
+	}
+
+	/**
+	 * Search a Model in redis index like find(clazz, fetchPlan, attributes),
+	 * keeping only the ids of the matches: they are loaded pageSize at a time,
+	 * each page with one pipeline, as the results are iterated.
+	 * 
+	 * @param clazz
+	 *          Class of Model annotated-type to search
+	 * @param fetchPlan
+	 *          How deep the References of the matches are loaded
+	 * @param pageSize
+	 *          How many matches are loaded at a time
+	 * @param attributes
+	 *          The attributes you are searching
+	 * @return
+	 */
+	public static <T> LazyResults<T> findLazy(Class<?> clazz,
+	    FetchPlan fetchPlan, int pageSize, NVField... attributes) {
+		List<String> modelIdStrings = find(clazz, true, attributes);
+		if (modelIdStrings == null) {
+			modelIdStrings = new ArrayList<String>();
+		}
+		return LazyResults.<T> of(clazz, fetchPlan, modelIdStrings, pageSize);
+	}
+
+	/**
+	 * The index set holding the ids of the models of the given Class type
+	 * whose attribute has the given value.
+	 */
+	private static String indexKey(Class<?> clazz, String attributeName,
+	    Object attributeValue, String hashTag) {
+		JOhmUtils.Validator.checkValidModelClazz(clazz);
 		if (!JOhmUtils.Validator.isIndexable(attributeName)) {
 			throw new JOhmException(new InvalidFieldException(),
 			    JOhmExceptionMeta.INVALID_INDEX);
 		}
 
-		Set<String> modelIdStrings = null;
+		String indexKey = null;
 		Nest nest = new Nest(clazz);
-		setPool(nest);
 		try {
 			Field field = clazz.getDeclaredField(attributeName);
 			if (field == null) {
@@ -170,14 +647,13 @@ public final class JOhm {
 			}
 			if (isAttribute || isReference) {
 				if (hashTag != null && !hashTag.isEmpty()) {
-					modelIdStrings = nest.cat(hashTag).cat(attributeName)
-					    .cat(attributeValue).smembers();
+					indexKey = nest.cat(hashTag).cat(attributeName)
+					    .cat(attributeValue).key();
 				} else {
-					modelIdStrings = nest.cat(attributeName).cat(attributeValue)
-					    .smembers();
+					indexKey = nest.cat(attributeName).cat(attributeValue).key();
 				}
 			} else {
-				modelIdStrings = nest.cat(attributeName).cat(attributeValue).smembers();
+				indexKey = nest.cat(attributeName).cat(attributeValue).key();
 			}
 		} catch (SecurityException e) {
 			throw new JOhmException(e, JOhmExceptionMeta.SECURITY_EXCEPTION);
@@ -188,18 +664,7 @@ public final class JOhm {
 			throw new JOhmException(new InvalidFieldException(),
 			    JOhmExceptionMeta.INVALID_VALUE);
 		}
-		if (modelIdStrings != null) {
-			// TODO: Do this lazy
-			results = new ArrayList<Object>();
-			Object indexed = null;
-			for (String modelIdString : modelIdStrings) {
-				indexed = get(clazz, Long.parseLong(modelIdString));
-				if (indexed != null) {
-					results.add(indexed);
-				}
-			}
-		}
-		return (List<T>) results;
+		return indexKey;
 	}
 
 	/**
@@ -214,6 +679,13 @@ public final class JOhm {
 	 * HashTag to the keys and if you have fields with HashTag, results will be
 	 * inaccurate.
 	 * 
+	 * The size of every condition is read first (see FindPlanner). A search
+	 * with an empty condition returns right away, one whose most selective
+	 * condition matches few ids checks the others id by id, and any other is
+	 * evaluated in Redis, most selective condition first, so that only the
+	 * ids of the matches are read. Without any EQUALS condition, NOTEQUALS
+	 * excludes from all the models of the Class type.
+	 * 
 	 * @param clazz
 	 *          Class of Model annotated-type to search
 	 * @param returnOnlyIds
@@ -221,9 +693,30 @@ public final class JOhm {
 	 *          The attributes you are searching
 	 * @return
 	 */
-	@SuppressWarnings("unchecked")
 	public static <T> List<T> find(Class<?> clazz, boolean returnOnlyIds,
 	    NVField... attributes) {
+		return JOhm.<T> find(clazz, returnOnlyIds, (Page) null, attributes);
+	}
+
+	/**
+	 * Search a Model in redis index using its attribute's given name/value pair
+	 * with condition specified, returning only the given Page of the matches,
+	 * in its order. The matches are evaluated in Redis and only the ids of the
+	 * page are read. Pages do not go through the QueryCache. A null Page
+	 * returns every match, as find() does.
+	 * 
+	 * @param clazz
+	 *          Class of Model annotated-type to search
+	 * @param returnOnlyIds
+	 * @param page
+	 *          The slice of the matches, and their order
+	 * @param attributes
+	 *          The attributes you are searching
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> List<T> find(Class<?> clazz, boolean returnOnlyIds,
+	    Page page, NVField... attributes) {
 		List<Object> results = null;
 		try {
 			if (attributes == null || attributes.length == 0) {
@@ -245,7 +738,6 @@ public final class JOhm {
 			Field field = null;
 			boolean isAttribute = false;
 			boolean isHashTag = false;
-			String referenceAttributeName = null;
 			for (NVField nvField : attributes) {
 				// Validation of Field
 				field = validationChecks(clazz, nvField);
@@ -292,148 +784,85 @@ public final class JOhm {
 				equalsFields.add(nvField);
 			}
 
-			// Store the intersection that satisfy "EQUALTO" condition at a
-			// destination key.
-			String destinationKeyForEqualToFields = getDestinationKeyOfEqualToFields(
-			    clazz, equalsFields, fields, hashTag);
-
-			boolean isReference = false;
-			Set<String> modelIdStrings = new HashSet<String>();
-			if (rangeFields.isEmpty() && notEqualsFields.isEmpty()) {// we are done if no range fields, get
-				// members of
-				// destinationKeyForEqualToFields
-				nest = new Nest(clazz);
-				setPool(nest);
-				nest.cat(destinationKeyForEqualToFields);
-				modelIdStrings.addAll(nest.smembers());
-			} else {		
-				
-				if (rangeFields.isEmpty()) {//If no rangeFields
-					// members of
-					// destinationKeyForEqualToFields
-					nest = new Nest(clazz);
-					setPool(nest);
-					nest.cat(destinationKeyForEqualToFields);
-					modelIdStrings.addAll(nest.smembers());
-				}else{//Process range fields
-					referenceAttributeName = null;
-					String value = null;
-					String keyNameForRange = null;
-					for (NVField rangeField : rangeFields) {
-						//Store intersection of range fields and
-						// destinationKeyForEqualToFields and store at destination key
-						keyNameForRange = getDestinationKeyForRangeField(clazz, rangeField,
-								fields, destinationKeyForEqualToFields, hashTag);
-						if (keyNameForRange == null) {
-							continue;
-						}
-
-						if (metaDataOfClass != null) {
-							isReference = metaDataOfClass.referenceFields.containsKey(field
-									.getName());
-						} else {
-							isReference = field.isAnnotationPresent(Reference.class);
-						}
-
-						if (isReference) {
-							referenceAttributeName = rangeField.getReferenceAttributeName();
-						}
-
-						// Find the range of values stored at keyNameForRange
-						nest = new Nest(keyNameForRange);
-						setPool(nest);
-						if (referenceAttributeName != null) {
-							value = String.valueOf(rangeField.getReferenceAttributeValue());
-						} else {
-							value = String.valueOf(rangeField.getAttributeValue());
-						}
-
-						if (JOhmUtils.isNullOrEmpty(value)) {
-							continue;
-						}
-
-						if (rangeField.getConditionUsed()
-								.equals(Condition.GREATERTHANEQUALTO)) {
-							if (modelIdStrings.isEmpty()) {
-								modelIdStrings.addAll(nest.zrangebyscore(value, INF_PLUS));
-							} else {
-								modelIdStrings.retainAll(nest.zrangebyscore(value, INF_PLUS));
-							}
-						} else if (rangeField.getConditionUsed()
-								.equals(Condition.GREATERTHAN)) {
-							if (modelIdStrings.isEmpty()) {
-								modelIdStrings.addAll(nest.zrangebyscore("(" + value, INF_PLUS));
-							} else {
-								modelIdStrings.retainAll(nest
-										.zrangebyscore("(" + value, INF_PLUS));
-							}
-						} else if (rangeField.getConditionUsed().equals(
-								Condition.LESSTHANEQUALTO)) {
-							if (modelIdStrings.isEmpty()) {
-								modelIdStrings.addAll(nest.zrangebyscore(INF_MINUS, value));
-							} else {
-								modelIdStrings.retainAll(nest.zrangebyscore(INF_MINUS, value));
-							}
-						} else if (rangeField.getConditionUsed().equals(Condition.LESSTHAN)) {
-							if (modelIdStrings.isEmpty()) {
-								modelIdStrings.addAll(nest.zrangebyscore(INF_MINUS, "(" + value));
-							} else {
-								modelIdStrings.retainAll(nest.zrangebyscore(INF_MINUS, "("
-										+ value));
-							}
-						}
-
-						//delete temporary key only if key is combination of equal to and range fields 
-						if (destinationKeyForEqualToFields != null) {
-							nest.del();
-						}
-					}
+			List<String> equalsKeys = getKeysOfEqualToFields(clazz, equalsFields,
+			    fields, hashTag);
+			List<String> notEqualsKeys = new ArrayList<String>();
+			for (NVField notEqualsField : notEqualsFields) {
+				notEqualsKeys.add(getDestinationKeyForField(clazz, notEqualsField,
+				    fields, hashTag));
+			}
+			List<FindPlanner.Range> ranges = new ArrayList<FindPlanner.Range>();
+			for (NVField rangeField : rangeFields) {
+				String value = getRangeValue(clazz, rangeField, fields);
+				if (JOhmUtils.isNullOrEmpty(value)) {
+					continue;
+				}
+				String indexKey = getIndexKeyForRangeField(clazz, rangeField, fields,
+				    hashTag);
+				Condition condition = rangeField.getConditionUsed();
+				if (condition.equals(Condition.GREATERTHANEQUALTO)) {
+					ranges.add(new FindPlanner.Range(indexKey, value, INF_PLUS));
+				} else if (condition.equals(Condition.GREATERTHAN)) {
+					ranges.add(new FindPlanner.Range(indexKey, "(" + value, INF_PLUS));
+				} else if (condition.equals(Condition.LESSTHANEQUALTO)) {
+					ranges.add(new FindPlanner.Range(indexKey, INF_MINUS, value));
+				} else if (condition.equals(Condition.LESSTHAN)) {
+					ranges.add(new FindPlanner.Range(indexKey, INF_MINUS, "(" + value));
 				}
-				
-				//Process NotEquals fields
-				String keyNameForNotEquals = null;
-				for (NVField notEqualsField : notEqualsFields) {
-					//Store intersection of range fields and
-					// destinationKeyForEqualToFields and store at destination key
-					keyNameForNotEquals = getDestinationKeyForField(clazz, notEqualsField,
-					    fields, hashTag);
-					if (keyNameForNotEquals == null) {
-						continue;
-					}
-
-					// Find the range of values stored at keyNameForRange
-					nest = new Nest(keyNameForNotEquals);
-					setPool(nest);
-					if (!modelIdStrings.isEmpty()) {
-						modelIdStrings.removeAll(nest.smembers());
-					}
-				}	
 			}
 
-			// Get the result
+			Collection<String> modelIdStrings = null;
+			QueryCache resultCache = page == null ? queryCache : null;
+			String queryKey = null;
+			List<String> generations = null;
+			if (resultCache != null) {
+				// Generations are read before evaluating, so that a write racing
+				// the search leaves an entry that is already stale
+				Set<String> generationFields = new HashSet<String>();
+				for (NVField nvField : attributes) {
+					generationFields.add(indexName(clazz,
+					    fields.get(nvField.getAttributeName())));
+				}
+				queryKey = QueryCache.key(clazz, attributes);
+				generations = QueryCache.generations(clazz, generationFields);
+				modelIdStrings = resultCache.get(clazz, queryKey, generations);
+			}
+			FindPlanner planner = new FindPlanner(equalsKeys, ranges, notEqualsKeys);
 			if (modelIdStrings != null) {
-				if (returnOnlyIds) {
-					results = new ArrayList<Object>();
-					results.addAll(modelIdStrings);
+				// Answered by the QueryCache
+			} else if (!rangeFields.isEmpty() && ranges.isEmpty()) {
+				// No range field had a value to compare with
+				modelIdStrings = new HashSet<String>();
+			} else {
+				planner.count();
+				if (planner.isEmpty()) {
+					modelIdStrings = new HashSet<String>();
+				} else if (page != null) {
+					modelIdStrings = evaluatePageInRedis(clazz, page, getOrderKey(
+					    clazz, page, hashTag), planner.equalsKeysBySize(), planner
+					    .rangesBySize(), notEqualsKeys);
+				} else if (planner.shouldProbe(findProbeLimit)) {
+					modelIdStrings = planner.probe();
 				} else {
-					results = new ArrayList<Object>();
-					Object indexed = null;
-					for (String modelIdString : modelIdStrings) {
-						indexed = get(clazz, Integer.parseInt(modelIdString));
-						if (indexed != null) {
-							results.add(indexed);
-						}
-					}
+					modelIdStrings = evaluateInRedis(clazz, planner
+					    .equalsKeysBySize(), planner.rangesBySize(), notEqualsKeys);
+				}
+				if (resultCache != null) {
+					resultCache.put(clazz, queryKey, generations,
+					    (Set<String>) modelIdStrings);
 				}
 			}
-			
-			//Delete the temporary key only if more than one field 
-			//With one field, key is key of regular set and not a temporary set.
-			if (equalsFields.size() > 1) {
-				nest = new Nest(clazz);
-				setPool(nest);
-				nest.cat(destinationKeyForEqualToFields);
-				nest.del();
+
+			// Get the result
+			if (modelIdStrings != null) {
+				if (returnOnlyIds) {
+					// Ids of expired models stay indexed until swept
+					modelIdStrings.removeAll(ModelExpiry.expired(clazz, modelIdStrings));
+					results = new ArrayList<Object>();
+					results.addAll(modelIdStrings);
+				} else {
+					results = JOhm.<Object> get(clazz, toIds(modelIdStrings));
+				}
 			}
 		} catch (Exception e) {
 			throw new JOhmException(e, JOhmExceptionMeta.GENERIC_EXCEPTION);
@@ -441,12 +870,265 @@ public final class JOhm {
 		return (List<T>) results;
 	}
 
-	private static String getDestinationKeyOfEqualToFields(Class<?> clazz,
+	/**
+	 * Search a Model in redis index using its attribute's given name/value pair
+	 * with condition specified, loading the matches with the given FetchPlan.
+	 * 
+	 * @param clazz
+	 *          Class of Model annotated-type to search
+	 * @param fetchPlan
+	 *          How deep the References of the matches are loaded
+	 * @param attributes
+	 *          The attributes you are searching
+	 * @return
+	 */
+	public static <T> List<T> find(Class<?> clazz, FetchPlan fetchPlan,
+	    NVField... attributes) {
+		return JOhm.<T> find(clazz, fetchPlan, (Page) null, attributes);
+	}
+
+	/**
+	 * Search a Model in redis index using its attribute's given name/value pair
+	 * with condition specified, loading only the given Page of the matches
+	 * with the given FetchPlan.
+	 * 
+	 * @param clazz
+	 *          Class of Model annotated-type to search
+	 * @param fetchPlan
+	 *          How deep the References of the matches are loaded
+	 * @param page
+	 *          The slice of the matches, and their order
+	 * @param attributes
+	 *          The attributes you are searching
+	 * @return
+	 */
+	public static <T> List<T> find(Class<?> clazz, FetchPlan fetchPlan,
+	    Page page, NVField... attributes) {
+		List<String> modelIdStrings = find(clazz, true, page, attributes);
+		if (modelIdStrings == null) {
+			return null;
+		}
+		return JOhm.<T> get(clazz, fetchPlan, toIds(modelIdStrings));
+	}
+
+	/**
+	 * Evaluate a search in Redis, in temporary keys, so that only the ids of
+	 * the matches are read: the EQUALS sets are intersected with SINTERSTORE,
+	 * NOTEQUALS members taken out with SDIFFSTORE (from all the models of the
+	 * Class type when there are no EQUALS fields), and every range applied to
+	 * a copy of its sorted set restricted to the candidates and trimmed with
+	 * ZREMRANGEBYSCORE. The ranges are then intersected with ZINTERSTORE.
+	 */
+	private static Set<String> evaluateInRedis(Class<?> clazz,
+	    List<String> equalsKeys, List<FindPlanner.Range> ranges,
+	    List<String> notEqualsKeys) {
+		List<String> temporaryKeys = new ArrayList<String>();
+		try {
+			Nest nest = new Nest(storeMatches(clazz, equalsKeys, ranges,
+			    notEqualsKeys, temporaryKeys));
+			setPool(nest);
+			return ranges.isEmpty() ? nest.smembers() : nest.zrange(0, -1);
+		} finally {
+			deleteTemporaryKeys(temporaryKeys);
+		}
+	}
+
+	/**
+	 * Evaluate a search in Redis like evaluateInRedis() and read only a page
+	 * of the matches. Ordered by a field, the matches are intersected with its
+	 * sorted set, their own scores weighted 0, and the page read by score;
+	 * matches without a value for the field are not in that sorted set, so
+	 * they are left out. Otherwise the page is read with SORT, in id order,
+	 * unless the ids come from an IdGenerator that may hand out ids above
+	 * 2^53, which SORT compares as equal doubles: those are sorted here.
+	 */
+	private static List<String> evaluatePageInRedis(Class<?> clazz, Page page,
+	    String orderKey, List<String> equalsKeys,
+	    List<FindPlanner.Range> ranges, List<String> notEqualsKeys) {
+		List<String> temporaryKeys = new ArrayList<String>();
+		try {
+			String matchesKey = storeMatches(clazz, equalsKeys, ranges,
+			    notEqualsKeys, temporaryKeys);
+			Nest nest;
+			if (orderKey == null) {
+				nest = new Nest(matchesKey);
+				setPool(nest);
+				IdGenerator idGenerator = getIdGenerator(clazz);
+				if (idGenerator == null || idGenerator instanceof BlockIdGenerator) {
+					return nest.sort(new SortingParams().limit(page.getOffset(), page
+					    .getLimit()));
+				}
+				return pageOfIds(ranges.isEmpty() ? nest.smembers() : nest.zrange(0,
+				    -1), page);
+			}
+			nest = new Nest(clazz);
+			setPool(nest);
+			nest.next(matchesKey);
+			nest.next(orderKey);
+			String orderedKey = TemporaryKeys.name(clazz, "order", nest.keys());
+			temporaryKeys.add(orderedKey);
+			nest.zinterstore(orderedKey, new ZParams().weights(0, 1));
+			TemporaryKeys.expire(orderedKey);
+			nest = new Nest(orderedKey);
+			setPool(nest);
+			Set<String> ids;
+			if (page.getOrder() == Page.Order.DESC) {
+				ids = nest.zrevrangebyscore(INF_PLUS, INF_MINUS, page.getOffset(),
+				    page.getLimit());
+			} else {
+				ids = nest.zrangebyscore(INF_MINUS, INF_PLUS, page.getOffset(), page
+				    .getLimit());
+			}
+			return new ArrayList<String>(ids);
+		} finally {
+			deleteTemporaryKeys(temporaryKeys);
+		}
+	}
+
+	/**
+	 * The given Page of the ids, in numeric order.
+	 */
+	private static List<String> pageOfIds(Collection<String> modelIdStrings,
+	    Page page) {
+		List<Long> ids = new ArrayList<Long>(modelIdStrings.size());
+		for (String modelIdString : modelIdStrings) {
+			ids.add(Long.valueOf(modelIdString));
+		}
+		Collections.sort(ids);
+		List<String> pageIds = new ArrayList<String>();
+		for (int i = page.getOffset(); i < ids.size()
+		    && pageIds.size() < page.getLimit(); i++) {
+			pageIds.add(String.valueOf(ids.get(i)));
+		}
+		return pageIds;
+	}
+
+	/**
+	 * The sorted set indexing the field a Page is ordered by, or null for id
+	 * order.
+	 */
+	private static String getOrderKey(Class<?> clazz, Page page, String hashTag)
+	    throws Exception {
+		if (page.getOrderBy() == null) {
+			return null;
+		}
+		Field field = clazz.getDeclaredField(page.getOrderBy());
+		ModelMetaData metaDataOfClass = JOhm.models.get(clazz.getSimpleName());
+		boolean isComparable = false;
+		if (metaDataOfClass != null) {
+			isComparable = metaDataOfClass.indexedFields.containsKey(field
+			    .getName())
+			    && metaDataOfClass.comparableFields.containsKey(field.getName());
+		} else {
+			isComparable = field.isAnnotationPresent(Indexed.class)
+			    && field.isAnnotationPresent(Comparable.class);
+		}
+		if (!isComparable) {
+			throw new JOhmException(new InvalidFieldException(),
+			    JOhmExceptionMeta.MISSING_COMPARABLE_ANNOTATION);
+		}
+		Nest nest = new Nest(clazz);
+		if (hashTag != null) {
+			nest.cat(hashTag);
+		}
+		return nest.cat(indexName(clazz, field)).key();
+	}
+
+	private static void deleteTemporaryKeys(List<String> temporaryKeys) {
+		for (String temporaryKey : temporaryKeys) {
+			Nest nest = new Nest(temporaryKey);
+			setPool(nest);
+			nest.del();
+		}
+	}
+
+	/**
+	 * Store the matches of a search in a temporary key, a set, or a sorted set
+	 * when there are ranges, unless a single index key already holds them.
+	 * The temporary keys written are added to temporaryKeys.
+	 */
+	private static String storeMatches(Class<?> clazz,
+	    List<String> equalsKeys, List<FindPlanner.Range> ranges,
+	    List<String> notEqualsKeys, List<String> temporaryKeys) {
+		Nest nest;
+		String candidatesKey = null;
+		if (equalsKeys.size() == 1) {
+			candidatesKey = equalsKeys.get(0);
+		} else if (equalsKeys.size() > 1) {
+			nest = new Nest(clazz);
+			setPool(nest);
+			for (String equalsKey : equalsKeys) {
+				nest.next(equalsKey);
+			}
+			candidatesKey = TemporaryKeys.name(clazz, "inter", nest.keys());
+			temporaryKeys.add(candidatesKey);
+			nest.sinterstore(candidatesKey);
+			TemporaryKeys.expire(candidatesKey);
+		}
+
+		if (!notEqualsKeys.isEmpty()) {
+			nest = new Nest(clazz);
+			setPool(nest);
+			nest.next(candidatesKey != null ? candidatesKey : new Nest(clazz)
+			    .cat("all").key());
+			for (String notEqualsKey : notEqualsKeys) {
+				nest.next(notEqualsKey);
+			}
+			candidatesKey = TemporaryKeys.name(clazz, "diff", nest.keys());
+			temporaryKeys.add(candidatesKey);
+			nest.sdiffstore(candidatesKey);
+			TemporaryKeys.expire(candidatesKey);
+		}
+
+		if (ranges.isEmpty()) {
+			return candidatesKey;
+		}
+
+		List<String> rangeKeys = new ArrayList<String>();
+		for (FindPlanner.Range range : ranges) {
+			nest = new Nest(clazz);
+			setPool(nest);
+			nest.next(range.key);
+			ZParams params = new ZParams();
+			if (candidatesKey != null) {
+				nest.next(candidatesKey);
+				params.weights(1, 0);
+			}
+			String rangeKey = TemporaryKeys.name(clazz, "range", nest.keys());
+			temporaryKeys.add(rangeKey);
+			if (candidatesKey != null) {
+				nest.zinterstore(rangeKey, params);
+			} else {
+				nest.zunionstore(rangeKey, params);
+			}
+			TemporaryKeys.expire(rangeKey);
+			nest = new Nest(rangeKey);
+			setPool(nest);
+			range.trim(nest);
+			rangeKeys.add(rangeKey);
+		}
+
+		String resultKey = rangeKeys.get(0);
+		if (rangeKeys.size() > 1) {
+			nest = new Nest(clazz);
+			setPool(nest);
+			for (String rangeKey : rangeKeys) {
+				nest.next(rangeKey);
+			}
+			resultKey = TemporaryKeys.name(clazz, "inter", nest.keys());
+			temporaryKeys.add(resultKey);
+			nest.zinterstore(resultKey, new ZParams());
+			TemporaryKeys.expire(resultKey);
+		}
+		return resultKey;
+	}
+
+	private static List<String> getKeysOfEqualToFields(Class<?> clazz,
 	    List<NVField> equalsFields, Map<String, Field> fields, String hashTag)
 	    throws Exception {
 		if (equalsFields == null || equalsFields.isEmpty() || fields == null
 		    || fields.isEmpty()) {
-			return null;
+			return new ArrayList<String>();
 		}
 
 		// Process "EQUALS" fields
@@ -502,13 +1184,7 @@ public final class JOhm {
 			}
 		}
 
-		String destinationKeyForEqualToMembers = nest.combineKeys();
-		nest.sinterstore(destinationKeyForEqualToMembers);
-		destinationKeyForEqualToMembers = destinationKeyForEqualToMembers
-		    .substring(nest.key().length() + 1,
-		        destinationKeyForEqualToMembers.length());
-
-		return destinationKeyForEqualToMembers;
+		return nest.keys();
 	}
 	
 	private static String getDestinationKeyForField(Class<?> clazz,
@@ -578,17 +1254,12 @@ public final class JOhm {
 		return nest.combineKeys();
 	}
 
-	private static String getDestinationKeyForRangeField(Class<?> clazz,
-	    NVField rangeField, Map<String, Field> fields,
-	    String destinationKeyForEqualToFields, String hashTag) {
-
-		if (rangeField == null || fields == null || fields.isEmpty()) {
-			return null;
-		}
-
-		// Processing of range field
+	/**
+	 * The sorted set indexing the given range field.
+	 */
+	private static String getIndexKeyForRangeField(Class<?> clazz,
+	    NVField rangeField, Map<String, Field> fields, String hashTag) {
 		String keyNameForRange = null;
-		Field field = null;
 		Nest nest = new Nest(clazz);
 		setPool(nest);
 		boolean isAttribute = false;
@@ -598,96 +1269,66 @@ public final class JOhm {
 		ModelMetaData metaDataOfClass = JOhm.models.get(clazz.getSimpleName());
 
 		// Get field
-		field = fields.get(rangeField.getAttributeName());
+		Field field = fields.get(rangeField.getAttributeName());
 		field.setAccessible(true);
 
-		// If EQUALS condition exist, do intersection of equals fields(unsorted)
-		// set and range field(sorted) set and store the results at the key on
-		// which range operation will be done.
-		// If EQUALS condition not exist, do range operation on this range field
-		// set.
-		if (destinationKeyForEqualToFields != null) {
-			if (metaDataOfClass != null) {
-				isAttribute = metaDataOfClass.attributeFields.containsKey(field
-				    .getName());
-				isReference = metaDataOfClass.referenceFields.containsKey(field
-				    .getName());
-			} else {
-				isAttribute = field.isAnnotationPresent(Attribute.class);
-				isReference = field.isAnnotationPresent(Reference.class);
-			}
-			if (isAttribute || isReference) {// Do hash tagging only for
-				// attribute or reference
-				if (isReference) {
-					attributeName = JOhmUtils.getReferenceKeyName(field);
-					referenceAttributeName = rangeField.getReferenceAttributeName();
-					if (hashTag != null) {
-						nest.cat(hashTag).cat(attributeName).cat(referenceAttributeName)
-						    .next();
-					} else {
-						nest.cat(attributeName).cat(referenceAttributeName).next();
-					}
+		if (metaDataOfClass != null) {
+			isAttribute = metaDataOfClass.attributeFields.containsKey(field
+			    .getName());
+			isReference = metaDataOfClass.referenceFields.containsKey(field
+			    .getName());
+		} else {
+			isAttribute = field.isAnnotationPresent(Attribute.class);
+			isReference = field.isAnnotationPresent(Reference.class);
+		}
+		if (isAttribute || isReference) {// Do hash tagging only for
+			// attribute or reference
+			if (isReference) {
+				attributeName = JOhmUtils.getReferenceKeyName(field);
+				referenceAttributeName = rangeField.getReferenceAttributeName();
+				if (hashTag != null) {
+					keyNameForRange = nest.cat(hashTag).cat(attributeName)
+					    .cat(referenceAttributeName).key();
 				} else {
-					attributeName = rangeField.getAttributeName();
-					if (hashTag != null) {
-						nest.cat(hashTag).cat(attributeName).next();
-					} else {
-						nest.cat(attributeName).next();
-					}
+					keyNameForRange = nest.cat(attributeName)
+					    .cat(referenceAttributeName).key();
 				}
-			} else {// no hash tagging
-				attributeName = rangeField.getAttributeName();
-				nest.cat(attributeName).next();
-			}
-			nest.cat(destinationKeyForEqualToFields).next();
-
-			// Get the name of the key where the combined set is located and on
-			// which range operation needs to be done.
-			keyNameForRange = nest.combineKeys();
 
-			// Store the intersection at the key
-			ZParams params = new ZParams();
-			params.weights(1, 0);
-			nest.zinterstore(keyNameForRange, params);
-		} else {
-			if (metaDataOfClass != null) {
-				isAttribute = metaDataOfClass.attributeFields.containsKey(field
-				    .getName());
-				isReference = metaDataOfClass.referenceFields.containsKey(field
-				    .getName());
 			} else {
-				isAttribute = field.isAnnotationPresent(Attribute.class);
-				isReference = field.isAnnotationPresent(Reference.class);
-			}
-			if (isAttribute || isReference) {// Do hash tagging only for
-				// attribute or reference
-				if (isReference) {
-					attributeName = JOhmUtils.getReferenceKeyName(field);
-					referenceAttributeName = rangeField.getReferenceAttributeName();
-					if (hashTag != null) {
-						keyNameForRange = nest.cat(hashTag).cat(attributeName)
-						    .cat(referenceAttributeName).key();
-					} else {
-						keyNameForRange = nest.cat(attributeName)
-						    .cat(referenceAttributeName).key();
-					}
-
+				attributeName = rangeField.getAttributeName();
+				if (hashTag != null) {
+					keyNameForRange = nest.cat(hashTag).cat(attributeName).key();
 				} else {
-					attributeName = rangeField.getAttributeName();
-					if (hashTag != null) {
-						keyNameForRange = nest.cat(hashTag).cat(attributeName).key();
-					} else {
-						keyNameForRange = nest.cat(attributeName).key();
-					}
+					keyNameForRange = nest.cat(attributeName).key();
 				}
-			} else {// no hash tagging
-				attributeName = rangeField.getAttributeName();
-				keyNameForRange = nest.cat(attributeName).key();
 			}
+		} else {// no hash tagging
+			attributeName = rangeField.getAttributeName();
+			keyNameForRange = nest.cat(attributeName).key();
 		}
 		return keyNameForRange;
 	}
 
+	/**
+	 * The bound of a range field, the referenced attribute's for a Reference.
+	 */
+	private static String getRangeValue(Class<?> clazz, NVField rangeField,
+	    Map<String, Field> fields) {
+		ModelMetaData metaDataOfClass = JOhm.models.get(clazz.getSimpleName());
+		Field field = fields.get(rangeField.getAttributeName());
+		boolean isReference;
+		if (metaDataOfClass != null) {
+			isReference = metaDataOfClass.referenceFields.containsKey(field
+			    .getName());
+		} else {
+			isReference = field.isAnnotationPresent(Reference.class);
+		}
+		if (isReference && rangeField.getReferenceAttributeName() != null) {
+			return String.valueOf(rangeField.getReferenceAttributeValue());
+		}
+		return String.valueOf(rangeField.getAttributeValue());
+	}
+
 	private static Field validationChecks(Class<?> clazz, NVField nvField)
 	    throws Exception {
 		Field field = null;
@@ -751,7 +1392,8 @@ public final class JOhm {
 						isComparableFieldOfReference = metaDataOfReferenceClass.comparableFields
 						    .containsKey(referenceField.getName());
 					} else {
-						Field referenceField = field.getType().getDeclaredField(
+						Field referenceField = JOhmUtils.getReferenceClass(field)
+						    .getDeclaredField(
 						    nvField.getReferenceAttributeName());
 						if (referenceField == null) {
 							throw new JOhmException(new InvalidFieldException(),
@@ -830,8 +1472,62 @@ public final class JOhm {
 		return JOhm.<T> save(model, false);
 	}
 
+	/**
+	 * Save given model to Redis, and with saveChildren every model reachable
+	 * from it through loaded References as well. The graph is walked once, so
+	 * reference cycles are fine and a model referenced twice is saved once.
+	 * Ids for all its new models are reserved up front, which lets a model
+	 * reference children that were never saved. Models of a Class type with
+	 * a WriteBehindBuffer are then queued, and with scripted saves every other
+	 * model is saved by its script; the rest of the graph is written in one
+	 * pipeline (one per shard), as with saveAll().
+	 * 
+	 * @param <T>
+	 * @param model
+	 * @param saveChildren
+	 * @return
+	 */
 	@SuppressWarnings("unchecked")
 	public static <T> T save(final Object model, boolean saveChildren) {
+		if (ModelState.isPartial(model)) {
+			throw new JOhmException(model.getClass().getSimpleName()
+			    + " was loaded with a projection and cannot be saved",
+			    JOhmExceptionMeta.PARTIAL_MODEL);
+		}
+
+		if (saveChildren) {
+			saveGraph(reachableModels(model));
+			return (T) model;
+		}
+		WriteBehindBuffer buffer = writeBehindBuffers.get(model.getClass());
+		if (buffer != null) {
+			// The id is reserved now for the caller to see it
+			initIfNeeded(model);
+			buffer.enqueue(model);
+			return (T) model;
+		}
+		if (!isNew(model)) {
+			ModelState.Snapshot snapshot = ModelState.snapshot(model);
+			if (snapshot != null) {
+				return JOhm.<T> saveChanges(model, snapshot);
+			}
+		}
+		if (scriptedSave && !isSharded) {
+			final Multimap<String, String> memberToBeRemovedFromSets = HashMultimap
+			    .create();
+			final Multimap<String, ScoreField> memberToBeRemovedFromSortedSets = HashMultimap
+			    .create();
+			if (!isNew(model)) {
+				feedCleanupData(model.getClass(), JOhmUtils.getId(model),
+				    memberToBeRemovedFromSets, memberToBeRemovedFromSortedSets,
+				    false);
+			}
+			initIfNeeded(model);
+			// The persisted hash is only overwritten, as in the full path
+			return JOhm.<T> saveChanges(model, ModelState.Snapshot.of(
+			    new HashMap<String, String>(), memberToBeRemovedFromSets,
+			    memberToBeRemovedFromSortedSets));
+		}
 
 		// Delete if exists
 		final Multimap<String, String> memberToBeRemovedFromSets = HashMultimap
@@ -848,59 +1544,650 @@ public final class JOhm {
 		if (!isNew(model)) {
 			feedCleanupData(model.getClass(), JOhmUtils.getId(model),
 			    memberToBeRemovedFromSets, memberToBeRemovedFromSortedSets,
-			    saveChildren);
+			    false);
 		}
 
 		final Nest nest = initIfNeeded(model);
+		long deletions = ModelState.deletions(model.getClass(),
+		    JOhmUtils.getId(model));
 
 		// Validate and Evaluate Fields
 		final Map<String, String> hashedObject = new HashMap<String, String>();
 		Map<RedisArray<Object>, Object[]> pendingArraysToPersist = new LinkedHashMap<RedisArray<Object>, Object[]>();
+		evaluate(model, pendingArraysToPersist, hashedObject,
+		    memberToBeAddedToSets, memberToBeAddedToSortedSets, nest);
+		
+		/*
+		 * If the elements in memberToBeAddedToSets are non-hashTag, then do
+		 * pipeline
+		 */
+		boolean pipeline = true;
+		if (isSharded) {
+			for (String hashTag : memberToBeAddedToSets.keySet()) {
+				if (isHashTag(hashTag)) {
+					pipeline = false;
+					break;
+				}
+			}
+		}
+		ModelState.Snapshot snapshot = ModelState.Snapshot.of(hashedObject,
+		    memberToBeAddedToSets, memberToBeAddedToSortedSets);
+		List<PipelinedWrite> afterHash = new ArrayList<PipelinedWrite>(3);
+		afterHash.add(IndexManifest.write(
+		    IndexManifest.key(model.getClass(), JOhmUtils.getId(model)), snapshot));
+		PipelinedWrite expiry = ModelExpiry.write(model.getClass(),
+		    JOhmUtils.getId(model));
+		if (expiry != null) {
+			afterHash.add(expiry);
+		}
+		// What was persisted before is not known, so every search is stale
+		PipelinedWrite generations = generationBump(model.getClass(),
+		    Collections.<String> emptyList());
+		if (generations != null) {
+			afterHash.add(generations);
+		}
+		if (pipeline && !isSharded) { 
+			saveUsingPipeline(model, memberToBeAddedToSets,
+          memberToBeAddedToSortedSets, memberToBeRemovedFromSets, memberToBeRemovedFromSortedSets, hashedObject,
+          afterHash);
+		} else {
+			saveUsingMulti(model, memberToBeAddedToSets, memberToBeAddedToSortedSets, memberToBeRemovedFromSets, memberToBeRemovedFromSortedSets, 
+          hashedObject);
+			writeUsingPipeline(afterHash);
+		}
+
+		if (pendingArraysToPersist != null && pendingArraysToPersist.size() > 0) {
+			for (Map.Entry<RedisArray<Object>, Object[]> arrayEntry : pendingArraysToPersist
+			    .entrySet()) {
+				arrayEntry.getKey().write(arrayEntry.getValue());
+			}
+		}
+		ModelState.remember(model, snapshot, deletions);
+		evict(model);
+		JOhmSession.attach(model, JOhmUtils.getId(model));
+
+		return (T) model;
+	}
+
+	/**
+	 * The given model followed by every model reachable from it through loaded
+	 * References, each once, in breadth-first order. Cycles are fine since
+	 * models are tracked by identity.
+	 */
+	/**
+	 * Save a graph of models the way save() would save each of them, with
+	 * their ids reserved first so that any of them can reference the others.
+	 */
+	private static void saveGraph(final List<Object> models) {
+		Map<Object, Boolean> isNew = reserveIds(models);
+		boolean scripted = scriptedSave && !isSharded;
+		List<Object> batched = new ArrayList<Object>();
+		for (Object model : models) {
+			WriteBehindBuffer buffer = writeBehindBuffers.get(model.getClass());
+			if (buffer == null && !scripted) {
+				batched.add(model);
+				continue;
+			}
+			if (isNew.get(model)) {
+				Nest nest = new Nest(model);
+				setPool(nest);
+				JOhmUtils.initCollections(model, nest);
+			}
+			if (buffer != null) {
+				buffer.enqueue(model);
+			} else {
+				save(model, false);
+			}
+		}
+		if (!batched.isEmpty()) {
+			writeBatch(batched, isNew, null);
+		}
+	}
+
+	private static List<Object> reachableModels(final Object model) {
+		List<Object> reachable = new ArrayList<Object>();
+		Map<Object, Boolean> visited = new IdentityHashMap<Object, Boolean>();
+		reachable.add(model);
+		visited.put(model, Boolean.TRUE);
+		try {
+			for (int i = 0; i < reachable.size(); i++) {
+				Object node = reachable.get(i);
+				for (Field field : JOhmUtils.gatherAllFields(node.getClass())) {
+					if (!field.isAnnotationPresent(Reference.class)) {
+						continue;
+					}
+					field.setAccessible(true);
+					Object child = JOhmUtils.loadedReference(field.get(node));
+					if (child != null && !visited.containsKey(child)) {
+						visited.put(child, Boolean.TRUE);
+						reachable.add(child);
+					}
+				}
+			}
+		} catch (IllegalArgumentException e) {
+			throw new JOhmException(e, JOhmExceptionMeta.ILLEGAL_ARGUMENT_EXCEPTION);
+		} catch (IllegalAccessException e) {
+			throw new JOhmException(e, JOhmExceptionMeta.ILLEGAL_ACCESS_EXCEPTION);
+		}
+		return reachable;
+	}
+
+	/**
+	 * Validate and evaluate the fields of a model into its hash, its index
+	 * entries and its pending arrays. Always adds the model to the all set, to
+	 * support getAll.
+	 */
+	private static void evaluate(final Object model,
+	    Map<RedisArray<Object>, Object[]> pendingArraysToPersist,
+	    Map<String, String> hashedObject,
+	    Multimap<String, String> memberToBeAddedToSets,
+	    Multimap<String, ScoreField> memberToBeAddedToSortedSets,
+	    final Nest nest) {
 		ModelMetaData metaDataOfClass = models
 		    .get(model.getClass().getSimpleName());
 		if (metaDataOfClass != null) {
 			evaluateCacheFields(model, metaDataOfClass, pendingArraysToPersist,
 			    hashedObject, memberToBeAddedToSets, memberToBeAddedToSortedSets,
-			    nest, saveChildren);
+			    nest);
 		} else {
 			evaluateFields(model, pendingArraysToPersist, hashedObject,
-			    memberToBeAddedToSets, memberToBeAddedToSortedSets, nest,
-			    saveChildren);
+			    memberToBeAddedToSets, memberToBeAddedToSortedSets, nest);
+		}
+		memberToBeAddedToSets.put(nest.cat("all").key(),
+		    String.valueOf(JOhmUtils.getId(model)));
+	}
+
+	/**
+	 * Save a model by diffing it against what is known to be persisted: only
+	 * the hash fields and the index entries that changed are written, in one
+	 * pipeline, or in one script call in scripted save mode. For a model
+	 * loaded through JOhm that is its snapshot, so the persisted model is not
+	 * read first; changes made to it in Redis by someone else since it was
+	 * loaded are not looked at.
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T> T saveChanges(final Object model,
+	    final ModelState.Snapshot before) {
+		long deletions = ModelState.deletions(model.getClass(),
+		    JOhmUtils.getId(model));
+		Nest nest = new Nest(model);
+		setPool(nest);
+		final Map<String, String> hashedObject = new HashMap<String, String>();
+		final Multimap<String, String> memberToBeAddedToSets = HashMultimap
+		    .create();
+		final Multimap<String, ScoreField> memberToBeAddedToSortedSets = HashMultimap
+		    .create();
+		Map<RedisArray<Object>, Object[]> pendingArraysToPersist = new LinkedHashMap<RedisArray<Object>, Object[]>();
+		evaluate(model, pendingArraysToPersist, hashedObject,
+		    memberToBeAddedToSets, memberToBeAddedToSortedSets, nest);
+
+		ModelState.Snapshot snapshot = ModelState.Snapshot.of(hashedObject,
+		    memberToBeAddedToSets, memberToBeAddedToSortedSets);
+		ChangeSet changes = new ChangeSet(nest.cat(JOhmUtils.getId(model))
+		    .key(), String.valueOf(JOhmUtils.getId(model)), before, snapshot);
+		List<PipelinedWrite> writes = new ArrayList<PipelinedWrite>(3);
+		if (!changes.isEmpty()) {
+			if (scriptedSave && !isSharded) {
+				ScriptedSave.apply(changes.scriptKeys(), changes.scriptArgs());
+			} else {
+				writes.add(changes);
+			}
+			PipelinedWrite generations = generationBump(model.getClass(), changes
+			    .generationFields(model.getClass()));
+			if (generations != null) {
+				writes.add(generations);
+			}
+		}
+		// Every save renews the TTL, even when nothing changed
+		PipelinedWrite expiry = ModelExpiry.write(model.getClass(),
+		    JOhmUtils.getId(model));
+		if (expiry != null) {
+			writes.add(expiry);
+		}
+		if (!writes.isEmpty()) {
+			writeUsingPipeline(writes);
+		}
+
+		for (Map.Entry<RedisArray<Object>, Object[]> arrayEntry : pendingArraysToPersist
+		    .entrySet()) {
+			arrayEntry.getKey().write(arrayEntry.getValue());
+		}
+		ModelState.remember(model, snapshot, deletions);
+		evict(model);
+		JOhmSession.attach(model, JOhmUtils.getId(model));
+
+		return (T) model;
+	}
+
+	/**
+	 * Save many models with as few round trips as possible. Ids for all the new
+	 * models of a Class type in a batch are reserved with a single INCRBY (or
+	 * drawn from its IdGenerator, if it has one), then
+	 * the hashes, the all set and the index entries of the whole batch are
+	 * written in one pipeline (one per shard on a ShardedJedisPool). Children
+	 * are not saved, as with save(model).
+	 * 
+	 * Models loaded through JOhm only write what changed since they were
+	 * loaded, as with save(). Unlike save(), the writes of a batch are not
+	 * wrapped in transactions on a sharded pool, so a failure can leave part of
+	 * a batch written.
+	 * 
+	 * @param models
+	 * @param batchSize
+	 * @return the saved models, in the order given
+	 */
+	public static <T> List<T> saveAll(final Collection<? extends T> models,
+	    int batchSize) {
+		if (batchSize <= 0) {
+			throw new JOhmException("Batch size must be positive",
+			    JOhmExceptionMeta.ILLEGAL_ARGUMENT_EXCEPTION);
+		}
+		List<T> saved = new ArrayList<T>(models.size());
+		List<T> batch = new ArrayList<T>(batchSize);
+		for (T model : models) {
+			batch.add(model);
+			if (batch.size() == batchSize) {
+				saveBatch(batch);
+				saved.addAll(batch);
+				batch.clear();
+			}
+		}
+		if (!batch.isEmpty()) {
+			saveBatch(batch);
+			saved.addAll(batch);
+		}
+		return saved;
+	}
+
+	private static void saveBatch(final List<?> batch) {
+		saveBatch(batch, null);
+	}
+
+	/**
+	 * Save a batch like saveAll(). With deferredIndexes, the index entries new
+	 * to the models of the batch are handed to it once their hashes are
+	 * written, instead of being written along with them. A batch that fails
+	 * leaves nothing for deferredIndexes to flush.
+	 */
+	static void saveBatch(final List<?> batch,
+	    final DeferredIndexes deferredIndexes) {
+		writeBatch(batch, reserveIds(batch), deferredIndexes);
+	}
+
+	/**
+	 * Check the models of a batch and reserve the ids of the new ones, one
+	 * INCRBY per Class type unless it has an IdGenerator. Returns which of
+	 * them were new.
+	 */
+	private static Map<Object, Boolean> reserveIds(final List<?> batch) {
+		Map<Class<?>, List<Object>> newModels = new LinkedHashMap<Class<?>, List<Object>>();
+		Map<Object, Boolean> isNew = new IdentityHashMap<Object, Boolean>();
+		for (Object model : batch) {
+			if (isNew.containsKey(model)) {
+				continue;
+			}
+			if (ModelState.isPartial(model)) {
+				throw new JOhmException(model.getClass().getSimpleName()
+				    + " was loaded with a projection and cannot be saved",
+				    JOhmExceptionMeta.PARTIAL_MODEL);
+			}
+			JOhmUtils.Validator.checkValidModel(model);
+			isNew.put(model, isNew(model));
+			if (isNew.get(model)) {
+				List<Object> sameClass = newModels.get(model.getClass());
+				if (sameClass == null) {
+					sameClass = new ArrayList<Object>();
+					newModels.put(model.getClass(), sameClass);
+				}
+				sameClass.add(model);
+			}
+		}
+		for (Map.Entry<Class<?>, List<Object>> entry : newModels.entrySet()) {
+			List<Object> sameClass = entry.getValue();
+			IdGenerator idGenerator = getIdGenerator(entry.getKey());
+			if (idGenerator != null) {
+				for (Object model : sameClass) {
+					JOhmUtils.loadId(model, idGenerator.nextId(entry.getKey()));
+				}
+				continue;
+			}
+			Nest nest = new Nest(entry.getKey());
+			setPool(nest);
+			long id = nest.cat("id").incrBy(sameClass.size())
+			    - sameClass.size();
+			for (Object model : sameClass) {
+				JOhmUtils.loadId(model, ++id);
+			}
+		}
+		return isNew;
+	}
+
+	private static void writeBatch(final List<?> batch,
+	    final Map<Object, Boolean> isNew, final DeferredIndexes deferredIndexes) {
+		List<PendingSave> saves = new ArrayList<PendingSave>(batch.size());
+		for (Object model : batch) {
+			PendingSave pending = new PendingSave(model);
+			Nest nest = new Nest(model);
+			setPool(nest);
+			pending.deletions = ModelState.deletions(model.getClass(), pending.id);
+			if (!isNew.get(model)) {
+				pending.before = ModelState.snapshot(model);
+			}
+			if (isNew.get(model)) {
+				JOhmUtils.initCollections(model, nest);
+			} else if (pending.before == null) {
+				feedCleanupData(model.getClass(), pending.id,
+				    pending.memberToBeRemovedFromSets,
+				    pending.memberToBeRemovedFromSortedSets, false);
+			}
+			evaluate(model, pending.pendingArraysToPersist, pending.hashedObject,
+			    pending.memberToBeAddedToSets,
+			    pending.memberToBeAddedToSortedSets, nest);
+			pending.deferIndexes = deferredIndexes != null
+			    && pending.before == null;
+			saves.add(pending);
+		}
+
+		writeUsingPipeline(saves);
+
+		for (PendingSave pending : saves) {
+			// Only once their hashes are written
+			if (pending.deferIndexes) {
+				deferredIndexes.add(String.valueOf(pending.id),
+				    pending.memberToBeAddedToSets,
+				    pending.memberToBeAddedToSortedSets);
+			}
+			for (Map.Entry<RedisArray<Object>, Object[]> arrayEntry : pending.pendingArraysToPersist
+			    .entrySet()) {
+				arrayEntry.getKey().write(arrayEntry.getValue());
+			}
+			ModelState.remember(pending.model, ModelState.Snapshot.of(
+			    pending.hashedObject, pending.memberToBeAddedToSets,
+			    pending.memberToBeAddedToSortedSets), pending.deletions);
+			evict(pending.model);
+			JOhmSession.attach(pending.model, pending.id);
+		}
+	}
+
+	static void writeUsingPipeline(
+	    final List<? extends PipelinedWrite> writes) {
+		Nest nest = new Nest();
+		setPool(nest);
+		Boolean ex = false;
+		if (isSharded) {
+			ShardedJedis jedis = null;
+			try {
+				jedis = nest.getShardedResource();
+				ShardedJedisPipeline pipelined = nest.shardedJedisPipelined(jedis);
+				for (PipelinedWrite write : writes) {
+					write.writeTo(pipelined);
+				}
+				pipelined.sync();
+			} catch (Exception e) {
+				e.printStackTrace();
+				ex = true;
+				if (jedis != null) {
+					nest.returnBrokenShardedResource(jedis);
+				}
+				throw new JOhmException(e.getMessage(),
+				    JOhmExceptionMeta.GENERIC_EXCEPTION);
+			} finally {
+				if (jedis != null && !ex) {
+					nest.returnShardedResource(jedis);
+				}
+			}
+		} else {
+			Jedis jedis = null;
+			try {
+				jedis = nest.getResource();
+				Pipeline pipelined = nest.pipelined(jedis);
+				for (PipelinedWrite write : writes) {
+					write.writeTo(pipelined);
+				}
+				pipelined.sync();
+			} catch (Exception e) {
+				e.printStackTrace();
+				ex = true;
+				if (jedis != null) {
+					nest.returnBrokenResource(jedis);
+				}
+				throw new JOhmException(e.getMessage(),
+				    JOhmExceptionMeta.GENERIC_EXCEPTION);
+			} finally {
+				if (jedis != null && !ex) {
+					nest.returnResource(jedis);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Commands queued on a pipeline shared with other writes.
+	 */
+	static abstract class PipelinedWrite {
+		abstract void writeTo(RedisPipeline pipelined);
+	}
+
+	/**
+	 * The difference between two snapshots of a model.
+	 */
+	private static final class ChangeSet extends PipelinedWrite {
+		final String key;
+		final String member;
+		final Map<String, String> changedFields = new HashMap<String, String>();
+		final List<String> removedFields = new ArrayList<String>();
+		final Set<String> setsToLeave = new HashSet<String>();
+		final Set<String> setsToJoin = new HashSet<String>();
+		final Set<String> sortedSetsToLeave = new HashSet<String>();
+		final Map<String, Double> sortedSetsToJoin = new HashMap<String, Double>();
+		// Rewritten whole, the snapshot diffed against may predate it
+		final List<String> manifest;
+
+		ChangeSet(String key, String member, ModelState.Snapshot before,
+		    ModelState.Snapshot after) {
+			this.key = key;
+			this.member = member;
+			this.manifest = IndexManifest.entries(after);
+			for (Map.Entry<String, String> field : after.hash.entrySet()) {
+				if (!field.getValue().equals(before.hash.get(field.getKey()))) {
+					changedFields.put(field.getKey(), field.getValue());
+				}
+			}
+			for (String field : before.hash.keySet()) {
+				if (!after.hash.containsKey(field)) {
+					removedFields.add(field);
+				}
+			}
+			for (String set : before.sets) {
+				if (!after.sets.contains(set)) {
+					setsToLeave.add(set);
+				}
+			}
+			for (String set : after.sets) {
+				if (!before.sets.contains(set)) {
+					setsToJoin.add(set);
+				}
+			}
+			for (String sortedSet : before.sortedSets.keySet()) {
+				if (!after.sortedSets.containsKey(sortedSet)) {
+					sortedSetsToLeave.add(sortedSet);
+				}
+			}
+			for (Map.Entry<String, Double> sortedSet : after.sortedSets.entrySet()) {
+				if (!sortedSet.getValue().equals(
+				    before.sortedSets.get(sortedSet.getKey()))) {
+					sortedSetsToJoin.put(sortedSet.getKey(), sortedSet.getValue());
+				}
+			}
+		}
+
+		List<String> scriptKeys() {
+			List<String> keys = new ArrayList<String>();
+			keys.add(key);
+			keys.addAll(setsToLeave);
+			keys.addAll(setsToJoin);
+			keys.addAll(sortedSetsToLeave);
+			keys.addAll(sortedSetsToJoin.keySet());
+			keys.add(IndexManifest.key(key));
+			return keys;
+		}
+
+		/**
+		 * Same order as scriptKeys(), see ScriptedSave.
+		 */
+		List<String> scriptArgs() {
+			List<String> args = new ArrayList<String>();
+			args.add(member);
+			args.add(String.valueOf(setsToLeave.size()));
+			args.add(String.valueOf(setsToJoin.size()));
+			args.add(String.valueOf(sortedSetsToLeave.size()));
+			args.add(String.valueOf(sortedSetsToJoin.size()));
+			args.add(String.valueOf(changedFields.size()));
+			args.add(String.valueOf(removedFields.size()));
+			args.add(String.valueOf(manifest.size()));
+			for (Double score : sortedSetsToJoin.values()) {
+				args.add(String.valueOf(score));
+			}
+			for (Map.Entry<String, String> field : changedFields.entrySet()) {
+				args.add(field.getKey());
+				args.add(field.getValue());
+			}
+			args.addAll(removedFields);
+			args.addAll(manifest);
+			return args;
+		}
+
+		/**
+		 * The generations to bump: those of the hash fields changed and of the
+		 * fields whose index entries moved, such as a Reference indexed by an
+		 * attribute of the referenced model. An index key that names no field
+		 * of the given Class type bumps the Class type.
+		 */
+		List<String> generationFields(Class<?> clazz) {
+			Set<String> fields = new LinkedHashSet<String>(changedFields.keySet());
+			fields.addAll(removedFields);
+			List<String> moved = new ArrayList<String>(setsToLeave);
+			moved.addAll(setsToJoin);
+			moved.addAll(sortedSetsToLeave);
+			moved.addAll(sortedSetsToJoin.keySet());
+			for (String index : moved) {
+				String field = indexedField(clazz, index);
+				fields.add(field == null ? QueryCache.CLASS_GENERATION : field);
+			}
+			return new ArrayList<String>(fields);
+		}
+
+		boolean isEmpty() {
+			return changedFields.isEmpty() && removedFields.isEmpty()
+			    && setsToLeave.isEmpty() && setsToJoin.isEmpty()
+			    && sortedSetsToLeave.isEmpty() && sortedSetsToJoin.isEmpty();
+		}
+
+		void writeTo(RedisPipeline pipelined) {
+			if (!changedFields.isEmpty()) {
+				pipelined.hmset(key, changedFields);
+			}
+			if (!removedFields.isEmpty()) {
+				pipelined.hdel(key,
+				    removedFields.toArray(new String[removedFields.size()]));
+			}
+			for (String set : setsToLeave) {
+				pipelined.srem(set, member);
+			}
+			for (String set : setsToJoin) {
+				pipelined.sadd(set, member);
+			}
+			for (String sortedSet : sortedSetsToLeave) {
+				pipelined.zrem(sortedSet, member);
+			}
+			for (Map.Entry<String, Double> sortedSet : sortedSetsToJoin.entrySet()) {
+				pipelined.zadd(sortedSet.getKey(), sortedSet.getValue(), member);
+			}
+			IndexManifest.writeTo(pipelined, IndexManifest.key(key), manifest);
+		}
+	}
+
+	/**
+	 * Everything saveAll() has to write for one model. Index multimaps are
+	 * keyed like in save(): a hashTag key maps to the index keys of its fields,
+	 * any other key is the index key itself.
+	 */
+	private static final class PendingSave extends PipelinedWrite {
+		final Object model;
+		final long id;
+		final Map<String, String> hashedObject = new HashMap<String, String>();
+		final Map<RedisArray<Object>, Object[]> pendingArraysToPersist = new LinkedHashMap<RedisArray<Object>, Object[]>();
+		final Multimap<String, String> memberToBeAddedToSets = HashMultimap
+		    .create();
+		final Multimap<String, ScoreField> memberToBeAddedToSortedSets = HashMultimap
+		    .create();
+		final Multimap<String, String> memberToBeRemovedFromSets = HashMultimap
+		    .create();
+		final Multimap<String, ScoreField> memberToBeRemovedFromSortedSets = HashMultimap
+		    .create();
+		// Snapshot to diff against instead of the removal multimaps
+		ModelState.Snapshot before;
+		// Index entries to add are written by a DeferredIndexes
+		boolean deferIndexes;
+		// ModelState.deletions() of the model before it was written
+		long deletions;
+
+		PendingSave(Object model) {
+			this.model = model;
+			this.id = JOhmUtils.getId(model);
 		}
 
-		// Always add to the all set, to support getAll
-		memberToBeAddedToSets.put(nest.cat("all").key(),
-		    String.valueOf(JOhmUtils.getId(model)));
-		
-		/*
-		 * If the elements in memberToBeAddedToSets are non-hashTag, then do
-		 * pipeline
-		 */
-		boolean pipeline = true;
-		if (isSharded) {
-			for (String hashTag : memberToBeAddedToSets.keySet()) {
-				if (isHashTag(hashTag)) {
-					pipeline = false;
-					break;
+		void writeTo(RedisPipeline pipelined) {
+			String member = String.valueOf(id);
+			if (before != null) {
+				ChangeSet changes = new ChangeSet(new Nest(model).cat(id).key(),
+				    member, before, ModelState.Snapshot.of(hashedObject,
+				        memberToBeAddedToSets, memberToBeAddedToSortedSets));
+				changes.writeTo(pipelined);
+				ModelExpiry.writeTo(pipelined, model.getClass(), id);
+				if (!changes.isEmpty()) {
+					writeGenerationBumpTo(pipelined, model.getClass(), changes
+					    .generationFields(model.getClass()));
 				}
+				return;
 			}
-		}
-		if (pipeline && !isSharded) { 
-			saveUsingPipeline(model, memberToBeAddedToSets,
-          memberToBeAddedToSortedSets, memberToBeRemovedFromSets, memberToBeRemovedFromSortedSets, hashedObject);
-		} else {
-			saveUsingMulti(model, memberToBeAddedToSets, memberToBeAddedToSortedSets, memberToBeRemovedFromSets, memberToBeRemovedFromSortedSets, 
-          hashedObject);
+			for (Map.Entry<String, String> entry : memberToBeRemovedFromSets
+			    .entries()) {
+				pipelined.srem(isHashTag(entry.getKey()) ? entry.getValue()
+				    : entry.getKey(), member);
+			}
+			for (Map.Entry<String, ScoreField> entry : memberToBeRemovedFromSortedSets
+			    .entries()) {
+				pipelined.zrem(isHashTag(entry.getKey()) ? entry.getValue()
+				    .getKey() : entry.getKey(), member);
+			}
+			if (!deferIndexes) {
+				writeIndexesTo(pipelined, member);
+			}
+			if (!hashedObject.isEmpty()) {
+				pipelined.hmset(new Nest(model).cat(id).key(), hashedObject);
+			}
+			IndexManifest.write(IndexManifest.key(model.getClass(), id),
+			    ModelState.Snapshot.of(hashedObject, memberToBeAddedToSets,
+			        memberToBeAddedToSortedSets)).writeTo(pipelined);
+			ModelExpiry.writeTo(pipelined, model.getClass(), id);
+			writeGenerationBumpTo(pipelined, model.getClass(),
+			    Collections.<String> emptyList());
 		}
 
-		if (pendingArraysToPersist != null && pendingArraysToPersist.size() > 0) {
-			for (Map.Entry<RedisArray<Object>, Object[]> arrayEntry : pendingArraysToPersist
-			    .entrySet()) {
-				arrayEntry.getKey().write(arrayEntry.getValue());
+		private void writeIndexesTo(RedisPipeline pipelined, String member) {
+			for (Map.Entry<String, String> entry : memberToBeAddedToSets
+			    .entries()) {
+				pipelined.sadd(isHashTag(entry.getKey()) ? entry.getValue()
+				    : entry.getKey(), member);
+			}
+			for (Map.Entry<String, ScoreField> entry : memberToBeAddedToSortedSets
+			    .entries()) {
+				pipelined.zadd(isHashTag(entry.getKey()) ? entry.getValue()
+				    .getKey() : entry.getKey(), entry.getValue().getScore(),
+				    member);
 			}
 		}
-
-		return (T) model;
 	}
 
 	private static void saveUsingPipeline(final Object model,
@@ -908,7 +2195,8 @@ public final class JOhm {
       final Multimap<String, ScoreField> memberToBeAddedToSortedSets,
       Multimap<String, String> memberToBeRemovedFromSets, 
       Multimap<String, ScoreField> memberToBeRemovedFromSortedSets,
-      final Map<String, String> hashedObject) {
+      final Map<String, String> hashedObject,
+      final List<PipelinedWrite> afterHash) {
 	  Collection<String> setMem;
 	  Jedis jedis = null;
 	  Nest nest = new Nest(model);
@@ -1012,6 +2300,9 @@ public final class JOhm {
 	  		
 	  		
 	  		pipelined.hmset(nest.cat(JOhmUtils.getId(model)).key(), hashedObject);
+	  		for (PipelinedWrite write : afterHash) {
+	  			write.writeTo(pipelined);
+	  		}
 	  		pipelined.sync();
 	  	} catch (Exception e){
 				 e.printStackTrace();
@@ -1203,7 +2494,7 @@ public final class JOhm {
 	    Map<String, String> hashedObject,
 	    Multimap<String, String> memberToBeAddedToSets,
 	    Multimap<String, ScoreField> memberToBeAddedToSortedSets,
-	    final Nest<?> nest, boolean saveChildren) {
+	    final Nest<?> nest) {
 		String fieldName = null;
 		String fieldNameForCache = null;
 		List<Field> fieldsOfClass = new ArrayList<Field>(
@@ -1277,9 +2568,6 @@ public final class JOhm {
 							throw new JOhmException(new MissingIdException(),
 							    JOhmExceptionMeta.MISSING_MODEL_ID);
 						}
-						if (saveChildren) {
-							save(child, saveChildren); // some more work to do
-						}
 						hashedObject.put(fieldName, String.valueOf(JOhmUtils.getId(child)));
 					}
 				}
@@ -1341,10 +2629,10 @@ public final class JOhm {
 						}
 
 						if (metaDataOfClass.referenceFields.containsKey(fieldNameForCache)) {
-							childModel = field.get(model);
+							childModel = JOhmUtils.resolveReference(field.get(model));
 							childMetaData = metaDataOfClass.referenceClasses
 							    .get(fieldNameForCache);
-							if (childMetaData == null) {
+							if (childMetaData == null || childModel == null) {
 								evaluateReferenceFieldInModel(model, metaDataOfClass, field,
 								    memberToBeAddedToSets, memberToBeAddedToSortedSets, nest,
 								    hashTags);
@@ -1413,7 +2701,7 @@ public final class JOhm {
 	    Map<String, String> hashedObject,
 	    Multimap<String, String> memberToBeAddedToSets,
 	    Multimap<String, ScoreField> memberToBeAddedToSortedSets,
-	    final Nest nest, boolean saveChildren) {
+	    final Nest nest) {
 		String fieldName = null;
 		String fieldNameForCache = null;
 		boolean isArrayField = false;
@@ -1556,9 +2844,6 @@ public final class JOhm {
 							throw new JOhmException(new MissingIdException(),
 							    JOhmExceptionMeta.MISSING_MODEL_ID);
 						}
-						if (saveChildren) {
-							save(child, saveChildren); // some more work to do
-						}
 						hashedObject.put(fieldName, String.valueOf(JOhmUtils.getId(child)));
 					}
 				}
@@ -1623,7 +2908,7 @@ public final class JOhm {
 					}
 				}
 
-				if (isReferenceField) {
+				if (isReferenceField && isIndexedField) {
 					evaluateReferenceFieldInModel(model, metaData, field,
 					    memberToBeAddedToSets, memberToBeAddedToSortedSets, nest,
 					    hashTags);
@@ -1645,7 +2930,8 @@ public final class JOhm {
 			String fieldNameOfReference = JOhmUtils
 			    .getReferenceKeyName(referenceField);
 			String fieldNameOfReferenceForCache = referenceField.getName();
-			Object referenceModel = referenceField.get(model);
+			Object referenceModel = JOhmUtils.resolveReference(referenceField
+			    .get(model));
 			if (referenceModel != null) {
 				ModelMetaData childMetaData = new ModelMetaData();
 				String childfieldName = null;
@@ -1762,12 +3048,30 @@ public final class JOhm {
 
 		boolean deleted = false;
 
+		WriteBehindBuffer buffer = writeBehindBuffers.get(clazz);
+		if (buffer != null) {
+			buffer.discard(clazz, id);
+		}
 		try {
-			feedCleanupData(clazz, id, memberToBeRemovedFromSets,
-			    memberToBeRemovedFromSortedSets, deleteChildren);
-			Object persistedModel = get(clazz, id);
+			// The manifest also tells that the model exists
+			boolean exists = IndexManifest.feed(clazz, id,
+			    memberToBeRemovedFromSets, memberToBeRemovedFromSortedSets);
+			if (!exists) {
+				feedCleanupData(clazz, id, memberToBeRemovedFromSets,
+				    memberToBeRemovedFromSortedSets, deleteChildren);
+				exists = getPersisted(clazz, id) != null;
+			} else if (deleteChildren) {
+				feedChildrenCleanupData(clazz, id, memberToBeRemovedFromSets,
+				    memberToBeRemovedFromSortedSets);
+			}
 
-			if (persistedModel != null) {
+			if (exists) {
+				if (ModelExpiry.seconds(clazz) > 0) {
+					String expiryKey = ModelExpiry.key(clazz);
+					memberToBeRemovedFromSortedSets.put(expiryKey, new ScoreField(
+					    expiryKey, 0d));
+				}
+				List<String> companionKeys = companionKeys(clazz, id);
 				// If all the elements in memberToBeAddedToSets are non-hashTag,
 				// then do pipeline
 				boolean pipeline = true;
@@ -1781,29 +3085,263 @@ public final class JOhm {
 				}
 
 				if (pipeline) {
-					deleted = deleteUsingPipeline(deleteIndexes, memberToBeRemovedFromSets,
-              memberToBeRemovedFromSortedSets, persistedModel);
+					deleted = deleteUsingPipeline(clazz, id, deleteIndexes,
+					    companionKeys, memberToBeRemovedFromSets,
+					    memberToBeRemovedFromSortedSets);
 
 				} else {
-					deleted = deleteUsingMulti(id, deleteIndexes, memberToBeRemovedFromSets,
-              memberToBeRemovedFromSortedSets, persistedModel); 
+					deleted = deleteUsingMulti(clazz, id, deleteIndexes,
+					    companionKeys, memberToBeRemovedFromSets,
+					    memberToBeRemovedFromSortedSets);
 				}
 			}
 		} catch (IllegalArgumentException e) {
 			throw new JOhmException(e, JOhmExceptionMeta.ILLEGAL_ARGUMENT_EXCEPTION);
+		} finally {
+			invalidate(clazz, id);
+			ModelState.deleted(clazz, id);
+			JOhmSession.detach(clazz, id);
+		}
+		if (deleted) {
+			PipelinedWrite generations = generationBump(clazz, Collections
+			    .<String> emptyList());
+			if (generations != null) {
+				writeUsingPipeline(Collections.singletonList(generations));
+			}
 		}
 		return deleted;
 	}
 
-	private static boolean deleteUsingMulti(long id, boolean deleteIndexes,
+	/**
+	 * Delete everything stored for the given Class type, without reading any
+	 * model: hashes, index sets and sorted sets, manifests, collections and
+	 * arrays, and the all set. The id counter is kept, so that ids reserved
+	 * by an IdGenerator before the purge are never handed out twice.
+	 * 
+	 * @param clazz
+	 * @return the number of keys deleted
+	 */
+	public static long purge(Class<?> clazz) {
+		return purge(clazz, 1000, 0);
+	}
+
+	/**
+	 * Delete everything stored for the given Class type by walking its keys
+	 * with SCAN, on every shard when sharded, batchSize keys at a time. Each
+	 * batch is deleted with one DEL. With a positive keysPerSecond, purge
+	 * pauses between batches to stay under that rate, so that a live server
+	 * is not held up.
+	 * 
+	 * The near cache is flushed afterwards, along with those of the other
+	 * nodes when an invalidation channel is set, and models of that Class
+	 * type are dropped from the session of the calling thread.
+	 * 
+	 * @param clazz
+	 * @param batchSize
+	 * @param keysPerSecond
+	 * @return the number of keys deleted
+	 */
+	public static long purge(Class<?> clazz, int batchSize, long keysPerSecond) {
+		JOhmUtils.Validator.checkValidModelClazz(clazz);
+		if (batchSize <= 0 || keysPerSecond < 0) {
+			throw new JOhmException(
+			    "Batch size must be positive and the rate cannot be negative",
+			    JOhmExceptionMeta.ILLEGAL_ARGUMENT_EXCEPTION);
+		}
+		Nest nest = new Nest(clazz);
+		setPool(nest);
+		// Generations and ids only ever move forward, or other JVMs could take
+		// entries of their QueryCache for current again, or hand out ids of
+		// the blocks they reserved twice
+		final String generationsKey = new Nest(clazz).cat(QueryCache.GENERATIONS)
+		    .key();
+		final String idKey = new Nest(clazz).cat("id").key();
+		try {
+			return nest.scanAndDelete(nest.cat("*").key(), batchSize,
+			    keysPerSecond, new Nest.KeyFilter() {
+				    public boolean accept(String key) {
+					    return !generationsKey.equals(key) && !idKey.equals(key);
+				    }
+			    });
+		} finally {
+			invalidateAll();
+			QueryCache resultCache = queryCache;
+			if (resultCache != null) {
+				resultCache.invalidateAll();
+				writeUsingPipeline(Collections.singletonList(generationBump(clazz,
+				    Collections.<String> emptyList())));
+			}
+			ModelState.purged();
+			JOhmSession.detachAll(clazz);
+		}
+	}
+
+	/**
+	 * The keys stored next to the hash of a model: its IndexManifest and its
+	 * arrays.
+	 */
+	private static List<String> companionKeys(Class<?> clazz, long id) {
+		List<String> keys = new ArrayList<String>();
+		keys.add(IndexManifest.key(clazz, id));
+		for (Field field : JOhmUtils.gatherAllFields(clazz)) {
+			if (field.isAnnotationPresent(Array.class)) {
+				keys.add(new Nest(clazz).cat(id).cat(field.getName()).key());
+			}
+		}
+		return keys;
+	}
+
+	/**
+	 * Delete many Redis-persisted models of the given Class type at once. Their
+	 * IndexManifests are read in one pipeline (models saved before manifests
+	 * existed are read in one batched load instead), then every index removal
+	 * is grouped by index key into a single SREM or ZREM with all the ids as
+	 * members, and the whole lot is sent along with the DELs of their hashes,
+	 * manifests and arrays in one pipeline (one per shard). Ids that do not
+	 * exist are ignored.
+	 * 
+	 * Unlike delete() on a sharded pool, no transactions are used, so a
+	 * failure can leave part of the batch deleted.
+	 * 
+	 * @param clazz
+	 * @param ids
+	 * @return the number of models deleted
+	 */
+	public static int deleteAll(Class<?> clazz, long... ids) {
+		JOhmUtils.Validator.checkValidModelClazz(clazz);
+		WriteBehindBuffer buffer = writeBehindBuffers.get(clazz);
+		if (buffer != null) {
+			for (long id : ids) {
+				buffer.discard(clazz, id);
+			}
+		}
+		try {
+			List<String> manifestKeys = new ArrayList<String>(ids.length);
+			for (long id : ids) {
+				manifestKeys.add(IndexManifest.key(clazz, id));
+			}
+			Nest nest = new Nest(clazz);
+			setPool(nest);
+			List<Set<String>> manifests = nest.smembers(manifestKeys);
+
+			BatchDelete batchDelete = new BatchDelete();
+			int deleted = 0;
+			List<Long> unlisted = new ArrayList<Long>();
+			for (int i = 0; i < ids.length; i++) {
+				Set<String> manifest = manifests.get(i);
+				if (manifest == null || manifest.isEmpty()) {
+					unlisted.add(ids[i]);
+					continue;
+				}
+				List<String> sets = new ArrayList<String>();
+				List<String> sortedSets = new ArrayList<String>();
+				IndexManifest.split(manifest, sets, sortedSets);
+				batchDelete.add(clazz, ids[i], sets, sortedSets);
+				deleted++;
+			}
+
+			// Models saved before manifests existed are read to find their indexes
+			long[] unlistedIds = new long[unlisted.size()];
+			for (int i = 0; i < unlistedIds.length; i++) {
+				unlistedIds[i] = unlisted.get(i);
+			}
+			for (Object victim : JOhm.<Object> load(clazz, FetchPlan.depth(1),
+			    unlistedIds, new HashMap<String, Object>(), null, false)) {
+				Nest victimNest = new Nest(victim);
+				setPool(victimNest);
+				Map<String, String> hashedObject = new HashMap<String, String>();
+				Multimap<String, String> memberOfSets = HashMultimap.create();
+				Multimap<String, ScoreField> memberOfSortedSets = HashMultimap
+				    .create();
+				evaluate(victim, new LinkedHashMap<RedisArray<Object>, Object[]>(),
+				    hashedObject, memberOfSets, memberOfSortedSets, victimNest);
+				ModelState.Snapshot persisted = ModelState.Snapshot.of(hashedObject,
+				    memberOfSets, memberOfSortedSets);
+				batchDelete.add(clazz, JOhmUtils.getId(victim), persisted.sets,
+				    persisted.sortedSets.keySet());
+				deleted++;
+			}
+
+			if (deleted > 0) {
+				List<PipelinedWrite> writes = new ArrayList<PipelinedWrite>(2);
+				writes.add(batchDelete);
+				PipelinedWrite generations = generationBump(clazz, Collections
+				    .<String> emptyList());
+				if (generations != null) {
+					writes.add(generations);
+				}
+				writeUsingPipeline(writes);
+			}
+			return deleted;
+		} finally {
+			for (long id : ids) {
+				invalidate(clazz, id);
+				ModelState.deleted(clazz, id);
+				JOhmSession.detach(clazz, id);
+			}
+		}
+	}
+
+	/**
+	 * The removals of deleteAll(), grouped by key.
+	 */
+	private static final class BatchDelete extends PipelinedWrite {
+		final Map<String, List<String>> srems = new HashMap<String, List<String>>();
+		final Map<String, List<String>> zrems = new HashMap<String, List<String>>();
+		final List<String> dels = new ArrayList<String>();
+
+		void add(Class<?> clazz, long id, Collection<String> sets,
+		    Collection<String> sortedSets) {
+			String member = String.valueOf(id);
+			for (String set : sets) {
+				remove(srems, set, member);
+			}
+			for (String sortedSet : sortedSets) {
+				remove(zrems, sortedSet, member);
+			}
+			if (ModelExpiry.seconds(clazz) > 0) {
+				remove(zrems, ModelExpiry.key(clazz), member);
+			}
+			dels.add(new Nest(clazz).cat(id).key());
+			dels.addAll(companionKeys(clazz, id));
+		}
+
+		void remove(Map<String, List<String>> removals, String key,
+		    String member) {
+			List<String> members = removals.get(key);
+			if (members == null) {
+				members = new ArrayList<String>();
+				removals.put(key, members);
+			}
+			members.add(member);
+		}
+
+		void writeTo(RedisPipeline pipelined) {
+			for (Map.Entry<String, List<String>> srem : srems.entrySet()) {
+				List<String> members = srem.getValue();
+				pipelined.srem(srem.getKey(), members.toArray(new String[members
+				    .size()]));
+			}
+			for (Map.Entry<String, List<String>> zrem : zrems.entrySet()) {
+				List<String> members = zrem.getValue();
+				pipelined.zrem(zrem.getKey(), members.toArray(new String[members
+				    .size()]));
+			}
+			for (String key : dels) {
+				pipelined.del(key);
+			}
+		}
+	}
+
+	private static boolean deleteUsingMulti(Class<?> clazz, long id,
+      boolean deleteIndexes, List<String> companionKeys,
       final Multimap<String, String> memberToBeRemovedFromSets,
-      final Multimap<String, ScoreField> memberToBeRemovedFromSortedSets,
-       Object persistedModel) {
+      final Multimap<String, ScoreField> memberToBeRemovedFromSortedSets) {
 	  // Do Multi - All the members in the Set are hashtag
 		boolean deleted = false;
 	  if (isSharded) {
 	  	Collection<String> setMem = null;
-	  	Nest mNest = new Nest(persistedModel);
+	  	Nest mNest = new Nest(clazz);
 	  	mNest.setJedisPool(shardedJedisPool, isSharded);
 
 	  	Nest nest = new Nest();
@@ -1817,7 +3355,7 @@ public final class JOhm {
 
 	  				if (setMem.size() == 1 && !isHashTag(hashTag)) {
 	  					// It is a non-hashTag field
-	  					nest.srem(hashTag, String.valueOf(JOhmUtils.getId(persistedModel)));
+	  					nest.srem(hashTag, String.valueOf(id));
 
 	  				} else {
 
@@ -1829,7 +3367,7 @@ public final class JOhm {
 
 	  						for (String key : setMem) {
 	  							Response<Long> ret = tx.srem(key,
-	  							    String.valueOf(JOhmUtils.getId(persistedModel)));
+	  							    String.valueOf(id));
 	  						}
 	  						/*Assumption is that the Set andSortedSet members
 	  						will have same hashTags*/
@@ -1838,7 +3376,7 @@ public final class JOhm {
 	  						if (sortedSetMem != null) {
 	  							for (ScoreField sf : sortedSetMem) {
 	  								tx.zrem(sf.getKey(),
-	  								    String.valueOf(JOhmUtils.getId(persistedModel)));
+	  								    String.valueOf(id));
 	  							}
 	  						}
 	  						tx.exec();
@@ -1858,22 +3396,27 @@ public final class JOhm {
 	  		}
 	  		
 	  		deleted = mNest.cat(id).del() == 1;
+	  		for (String key : companionKeys) {
+	  			Nest cNest = new Nest(key);
+	  			cNest.setJedisPool(shardedJedisPool, isSharded);
+	  			cNest.del();
+	  		}
 
 	  	} catch (Exception e) {
 	  		rollbackDelete(deleteIndexes, memberToBeRemovedFromSets,
-	          memberToBeRemovedFromSortedSets, persistedModel);
+	          memberToBeRemovedFromSortedSets, clazz, id);
 	  	}
 	  }
 	  return deleted;
   }
 
-	private static boolean deleteUsingPipeline(boolean deleteIndexes,
+	private static boolean deleteUsingPipeline(Class<?> clazz, long id,
+      boolean deleteIndexes, List<String> companionKeys,
       final Multimap<String, String> memberToBeRemovedFromSets,
-      final Multimap<String, ScoreField> memberToBeRemovedFromSortedSets,
-      Object persistedModel) {
+      final Multimap<String, ScoreField> memberToBeRemovedFromSortedSets) {
 	  boolean deleted;
 	  // All the members in the Set are just keys(non-hashtag)
-	  Nest pNest = new Nest(persistedModel);
+	  Nest pNest = new Nest(clazz);
 
 	  if (isSharded) { // If no hashTag, do pipeline (can't do multi)
 	  	pNest.setJedisPool(shardedJedisPool, isSharded);
@@ -1887,14 +3430,17 @@ public final class JOhm {
 	  		if (deleteIndexes) {
 	  			for (String key : memberToBeRemovedFromSets.keySet()) {
 	  				sPipelined.srem(key,
-	  				    String.valueOf(JOhmUtils.getId(persistedModel)));
+	  				    String.valueOf(id));
 	  			}
 	  			for (String key : memberToBeRemovedFromSortedSets.keySet()) {
 	  				sPipelined.zrem(key,
-	  				    String.valueOf(JOhmUtils.getId(persistedModel)));
+	  				    String.valueOf(id));
 	  			}
 	  		}
-	  		sPipelined.del(pNest.cat(JOhmUtils.getId(persistedModel)).key());
+	  		sPipelined.del(pNest.cat(id).key());
+	  		for (String key : companionKeys) {
+	  			sPipelined.del(key);
+	  		}
 	  		sPipelined.sync();
 	  	} catch (Exception e) {
 				e.printStackTrace();
@@ -1925,31 +3471,29 @@ public final class JOhm {
 
 	  				if (setMem.size() == 1 && !isHashTag(hashTag)) {
 	  					// It is a non-hashTag field
-	  					pipelined.srem(hashTag, String.valueOf(JOhmUtils
-	  					    .getId(persistedModel)));
+	  					pipelined.srem(hashTag, String.valueOf(id));
 
 	  				} else {
 	  					// It is hashTag collection
 	  					for (String key : setMem) {
 	  						Response<Long> ret = pipelined.srem(key,
-	  						    String.valueOf(JOhmUtils.getId(persistedModel)));
+	  						    String.valueOf(id));
 	  					}
-	  				/* Assumption is that the Set and SortedSet members
-	  					 will have same hashTags*/
-	  					Collection<String> sortedSetMem = memberToBeRemovedFromSets
-	  					    .get(hashTag);
-	  					if (sortedSetMem != null) {
-	  						for (String key : sortedSetMem) {
-	  							pipelined.zrem(key,
-	  							    String.valueOf(JOhmUtils.getId(persistedModel)));
-	  						}
-	  					}
-
 	  				}
 	  			}
+	  			for (Map.Entry<String, ScoreField> entry : memberToBeRemovedFromSortedSets
+	  			    .entries()) {
+	  				// Non-hashTag keys may not repeat the key in the ScoreField
+	  				String key = entry.getValue().getKey();
+	  				pipelined.zrem(key != null ? key : entry.getKey(),
+	  				    String.valueOf(id));
+	  			}
 	  		}
 
-	  		pipelined.del(pNest.cat(JOhmUtils.getId(persistedModel)).key());
+	  		pipelined.del(pNest.cat(id).key());
+	  		for (String key : companionKeys) {
+	  			pipelined.del(key);
+	  		}
 	  		pipelined.sync();
 	  	} catch (Exception e) {
 				e.printStackTrace();
@@ -1970,12 +3514,12 @@ public final class JOhm {
 	private static void rollbackDelete(boolean deleteIndexes,
 	    final Multimap<String, String> memberToBeRemovedFromSets,
 	    final Multimap<String, ScoreField> memberToBeRemovedFromSortedSets,
-	    Object persistedModel) {
+	    Class<?> clazz, long id) {
 		Collection<String> setMem;
 		// Transaction Roll-back...
 		Collection<String> rSetMem = null;
 
-		Nest rNest = new Nest(persistedModel);
+		Nest rNest = new Nest(clazz);
 		rNest.setJedisPool(shardedJedisPool, isSharded);
 
 		if (deleteIndexes) {
@@ -1985,7 +3529,7 @@ public final class JOhm {
 				if (setMem.size() == 1 && !isHashTag(hashTag)) {
 					// It is a non-hashTag field
 
-					rNest.sadd(hashTag, String.valueOf(JOhmUtils.getId(persistedModel)));
+					rNest.sadd(hashTag, String.valueOf(id));
 
 				} else {
 					// It is hashTag collection
@@ -1996,13 +3540,13 @@ public final class JOhm {
 						boolean flag = true;
 						for (String key : setMem) {
 						  //If one of the members exists in set, no need to add.
-							if(flag && rNest.sismember(key, String.valueOf(JOhmUtils.getId(persistedModel)))){
+							if(flag && rNest.sismember(key, String.valueOf(id))){
 								break;
 							}else{
 								flag = false;
 							}
 							Response<Long> ret = tx.sadd(key,
-							    String.valueOf(JOhmUtils.getId(persistedModel)));
+							    String.valueOf(id));
 
 						}
 						// Set and SortedSet members will have same hashTags
@@ -2010,7 +3554,7 @@ public final class JOhm {
 						    .get(hashTag);
 						if (sortedSetMem != null) {
 							for (ScoreField sf : sortedSetMem) {
-								tx.zadd(sf.getKey(), sf.getScore(), String.valueOf(JOhmUtils.getId(persistedModel)));
+								tx.zadd(sf.getKey(), sf.getScore(), String.valueOf(id));
 							}
 						}
 						tx.exec();
@@ -2036,7 +3580,11 @@ public final class JOhm {
 	    Multimap<String, ScoreField> memberToBeRemovedFromSortedSet,
 	    boolean cleanupChildren) {
 		JOhmUtils.Validator.checkValidModelClazz(clazz);
-		Object persistedModel = get(clazz, id);
+		if (IndexManifest.feed(clazz, id, memberToBeRemovedFromSet,
+		    memberToBeRemovedFromSortedSet)) {
+			return;
+		}
+		Object persistedModel = getPersisted(clazz, id);
 		if (persistedModel != null) {
 			Nest nest = new Nest(persistedModel);
 			setPool(nest);
@@ -2166,8 +3714,9 @@ public final class JOhm {
 							}
 
 							// Reference field
-							if (isReference) {
-								childModel = field.get(persistedModel);
+							childModel = isReference ? JOhmUtils.resolveReference(field
+							    .get(persistedModel)) : null;
+							if (childModel != null) {
 								metaDataOfReferenceClass = JOhm.models.get(childModel
 								    .getClass().getSimpleName());
 								fieldsOfRerenceClass = new ArrayList<Field>();
@@ -2263,7 +3812,8 @@ public final class JOhm {
 
 						if (isReference) {
 							field.setAccessible(true);
-							Object child = field.get(persistedModel);
+							Object child = JOhmUtils.resolveReference(field
+							    .get(persistedModel));
 							if (child != null) {
 								feedCleanupData(child.getClass(), JOhmUtils.getId(child),
 								    memberToBeRemovedFromSet, memberToBeRemovedFromSortedSet,
@@ -2283,6 +3833,36 @@ public final class JOhm {
 		}
 	}
 
+	/**
+	 * Feed the cleanup data of the References of a persisted model, as
+	 * feedCleanupData() does with cleanupChildren for a model it has to load
+	 * anyway.
+	 */
+	private static void feedChildrenCleanupData(Class<?> clazz, long id,
+	    Multimap<String, String> memberToBeRemovedFromSet,
+	    Multimap<String, ScoreField> memberToBeRemovedFromSortedSet) {
+		Object persistedModel = getPersisted(clazz, id);
+		if (persistedModel == null) {
+			return;
+		}
+		try {
+			for (Field field : JOhmUtils.gatherAllFields(clazz)) {
+				if (field.isAnnotationPresent(Reference.class)) {
+					field.setAccessible(true);
+					Object child = JOhmUtils.resolveReference(field
+					    .get(persistedModel));
+					if (child != null) {
+						feedCleanupData(child.getClass(), JOhmUtils.getId(child),
+						    memberToBeRemovedFromSet, memberToBeRemovedFromSortedSet,
+						    true);
+					}
+				}
+			}
+		} catch (IllegalAccessException e) {
+			throw new JOhmException(e, JOhmExceptionMeta.ILLEGAL_ACCESS_EXCEPTION);
+		}
+	}
+
 	/**
 	 * Inject JedisPool into JOhm. This is a mandatory JOhm setup operation.
 	 * 
@@ -2303,6 +3883,258 @@ public final class JOhm {
 		JOhm.isSharded = true;
 	}
 
+	/**
+	 * Install an in-process near cache in front of get(), or remove it with
+	 * null.
+	 * 
+	 * @param modelCache
+	 */
+	public static void setCache(final ModelCache modelCache) {
+		JOhm.cache = modelCache;
+	}
+
+	public static ModelCache getCache() {
+		return cache;
+	}
+
+	/**
+	 * Install a QueryCache of the results of find(), or remove it with null.
+	 * 
+	 * @param resultCache
+	 */
+	public static void setQueryCache(final QueryCache resultCache) {
+		JOhm.queryCache = resultCache;
+	}
+
+	public static QueryCache getQueryCache() {
+		return queryCache;
+	}
+
+	/**
+	 * Save models with one atomic script call each instead of a pipeline or
+	 * transactions. Only used with a non-sharded pool, since the script has to
+	 * reach every index key of a model on a single server.
+	 * 
+	 * @param scripted
+	 */
+	public static void setScriptedSave(final boolean scripted) {
+		JOhm.scriptedSave = scripted;
+	}
+
+	public static boolean isScriptedSave() {
+		return scriptedSave;
+	}
+
+	/**
+	 * Searches on several fields whose most selective condition matches at
+	 * most that many ids check the other conditions id by id instead of
+	 * intersecting in Redis. 0 always intersects in Redis.
+	 * 
+	 * @param probeLimit
+	 */
+	public static void setFindProbeLimit(final int probeLimit) {
+		if (probeLimit < 0) {
+			throw new JOhmException("Probe limit cannot be negative",
+			    JOhmExceptionMeta.ILLEGAL_ARGUMENT_EXCEPTION);
+		}
+		JOhm.findProbeLimit = probeLimit;
+	}
+
+	public static int getFindProbeLimit() {
+		return findProbeLimit;
+	}
+
+	/**
+	 * Queue the saves of the given Class type in the given WriteBehindBuffer
+	 * instead of writing them right away. Saves with saveChildren still write
+	 * through. Pass null to write through again; the removed buffer is neither
+	 * flushed nor shut down.
+	 * 
+	 * @param clazz
+	 * @param buffer
+	 */
+	public static void setWriteBehind(final Class<?> clazz,
+	    final WriteBehindBuffer buffer) {
+		if (buffer == null) {
+			writeBehindBuffers.remove(clazz);
+		} else {
+			writeBehindBuffers.put(clazz, buffer);
+		}
+	}
+
+	public static WriteBehindBuffer getWriteBehind(final Class<?> clazz) {
+		return writeBehindBuffers.get(clazz);
+	}
+
+	/**
+	 * Hand out the ids of new models of the given Class type with the given
+	 * generator instead of the Class:id counter. Pass null to go back to the
+	 * default.
+	 * 
+	 * @param clazz
+	 * @param idGenerator
+	 */
+	public static void setIdGenerator(final Class<?> clazz,
+	    final IdGenerator idGenerator) {
+		if (idGenerator == null) {
+			idGenerators.remove(clazz);
+		} else {
+			idGenerators.put(clazz, idGenerator);
+		}
+	}
+
+	/**
+	 * Hand out the ids of new models of every Class type without a generator
+	 * of its own with the given generator. Pass null to go back to the
+	 * Class:id counter.
+	 * 
+	 * @param idGenerator
+	 */
+	public static void setIdGenerator(final IdGenerator idGenerator) {
+		JOhm.defaultIdGenerator = idGenerator;
+	}
+
+	public static IdGenerator getIdGenerator(final Class<?> clazz) {
+		IdGenerator idGenerator = idGenerators.get(clazz);
+		if (idGenerator == null) {
+			idGenerator = defaultIdGenerator;
+		}
+		return idGenerator;
+	}
+
+	/**
+	 * Publish an invalidation message on the given channel for every model this
+	 * JVM saves or deletes, so that the near caches of other nodes can drop
+	 * their copy through a CacheInvalidator. Pass null to stop publishing.
+	 * 
+	 * @param channel
+	 */
+	public static void setInvalidationChannel(final String channel) {
+		JOhm.invalidationChannel = channel;
+	}
+
+	public static String getInvalidationChannel() {
+		return invalidationChannel;
+	}
+
+	/**
+	 * Drop the given model from the near cache, if one is installed, and tell
+	 * the other nodes to do the same when an invalidation channel is set. JOhm
+	 * calls this once every save, delete and collection mutation is written,
+	 * so that no reader can cache the state it replaces.
+	 * 
+	 * @param model
+	 */
+	public static void evict(final Object model) {
+		if ((cache != null || invalidationChannel != null) && model != null) {
+			Long id = JOhmUtils.getId(model, false);
+			if (id != null) {
+				invalidate(model.getClass(), id);
+			}
+		}
+	}
+
+	/**
+	 * Bump the generation of an indexed field of the given model for the
+	 * QueryCache, if one is installed. JOhm calls this whenever an index of
+	 * a collection or array changes.
+	 * 
+	 * @param model
+	 * @param fieldName
+	 */
+	public static void indexChanged(final Object model, final String fieldName) {
+		if (queryCache != null && model != null) {
+			writeUsingPipeline(Collections.singletonList(generationBump(model
+			    .getClass(), Collections.singletonList(fieldName))));
+		}
+	}
+
+	/**
+	 * The QueryCache generation bump of the given fields, or of the Class type
+	 * when there are none, or null without a QueryCache.
+	 */
+	private static PipelinedWrite generationBump(Class<?> clazz,
+	    List<String> fields) {
+		return queryCache == null ? null : QueryCache.bump(clazz, fields);
+	}
+
+	private static void writeGenerationBumpTo(RedisPipeline pipelined,
+	    Class<?> clazz, List<String> fields) {
+		PipelinedWrite generations = generationBump(clazz, fields);
+		if (generations != null) {
+			generations.writeTo(pipelined);
+		}
+	}
+
+	/**
+	 * The name a field is hashed and indexed under: the hash field of an
+	 * attribute or reference, the field name of a collection or array. Its
+	 * QueryCache generation goes by the same name.
+	 */
+	private static String indexName(Class<?> clazz, Field field) {
+		ModelMetaData metaDataOfClass = models.get(clazz.getSimpleName());
+		boolean isReference = metaDataOfClass != null ? metaDataOfClass.referenceFields
+		    .containsKey(field.getName()) : field
+		    .isAnnotationPresent(Reference.class);
+		return isReference ? JOhmUtils.getReferenceKeyName(field) : field
+		    .getName();
+	}
+
+	/**
+	 * The indexName() of the field an index key of the given Class type was
+	 * built from, Class:field:... or Class:{hashTag}:field:..., null when it
+	 * names none.
+	 */
+	private static String indexedField(Class<?> clazz, String indexKey) {
+		String prefix = clazz.getSimpleName() + ":";
+		if (!indexKey.startsWith(prefix)) {
+			return null;
+		}
+		String rest = indexKey.substring(prefix.length());
+		if (rest.startsWith("{")) {
+			int end = rest.indexOf("}:");
+			if (end < 0) {
+				return null;
+			}
+			rest = rest.substring(end + 2);
+		}
+		int colon = rest.indexOf(':');
+		String name = colon < 0 ? rest : rest.substring(0, colon);
+		for (Field field : JOhmUtils.gatherAllFields(clazz)) {
+			if (field.getName().equals(name)
+			    || JOhmUtils.getReferenceKeyName(field).equals(name)) {
+				return indexName(clazz, field);
+			}
+		}
+		return null;
+	}
+
+	private static void invalidateAll() {
+		ModelCache modelCache = cache;
+		if (modelCache != null) {
+			modelCache.invalidateAll();
+		}
+		String channel = invalidationChannel;
+		if (channel != null) {
+			Nest nest = new Nest(channel);
+			setPool(nest);
+			nest.publish(CacheInvalidator.ALL);
+		}
+	}
+
+	private static void invalidate(Class<?> clazz, long id) {
+		ModelCache modelCache = cache;
+		if (modelCache != null) {
+			modelCache.invalidate(clazz, id);
+		}
+		String channel = invalidationChannel;
+		if (channel != null) {
+			Nest nest = new Nest(channel);
+			setPool(nest);
+			nest.publish(ModelCache.key(clazz, id));
+		}
+	}
+
 	private static void fillField(final Map<String, String> hashedObject,
 	    final Object newInstance, final Field field)
 	    throws IllegalAccessException {
@@ -2316,15 +4148,6 @@ public final class JOhm {
 				        hashedObject.get(field.getName())));
 			}
 		}
-		if (field.isAnnotationPresent(Reference.class)) {
-			field.setAccessible(true);
-			String serializedReferenceId = hashedObject.get(JOhmUtils
-			    .getReferenceKeyName(field));
-			if (serializedReferenceId != null) {
-				Long referenceId = Long.valueOf(serializedReferenceId);
-				field.set(newInstance, get(field.getType(), referenceId));
-			}
-		}
 	}
 
 	@SuppressWarnings("unchecked")
@@ -2347,7 +4170,12 @@ public final class JOhm {
 		setPool(nest);
 		if (id == null) {
 			// lazily initialize id, nest, collections
-			id = nest.cat("id").incr();
+			IdGenerator idGenerator = getIdGenerator(model.getClass());
+			if (idGenerator != null) {
+				id = idGenerator.nextId(model.getClass());
+			} else {
+				id = nest.cat("id").incr();
+			}
 			JOhmUtils.loadId(model, id);
 			JOhmUtils.initCollections(model, nest);
 		}
@@ -2363,13 +4191,7 @@ public final class JOhm {
 		Set<String> modelIdStrings = nest.cat("all").smembers();
 		if (modelIdStrings != null) {
 			results = new HashSet<Object>();
-			Object indexed = null;
-			for (String modelIdString : modelIdStrings) {
-				indexed = get(clazz, Long.parseLong(modelIdString));
-				if (indexed != null) {
-					results.add(indexed);
-				}
-			}
+			results.addAll(JOhm.<Object> get(clazz, toIds(modelIdStrings)));
 		}
 		return (Set<T>) results;
 	}
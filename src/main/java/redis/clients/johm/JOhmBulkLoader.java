@@ -0,0 +1,171 @@
+package redis.clients.johm;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * JOhmBulkLoader imports a stream of models, for instance when a new Redis is
+ * bootstrapped from files. Models are read from the source pipelineDepth at a
+ * time and every batch is written like saveAll() does, in one pipeline. Up to
+ * inFlightBatches batches are written concurrently, and the source is not
+ * read further until one of them is done, so at most
+ * (inFlightBatches + 1) * pipelineDepth models are held in memory whatever
+ * the size of the source.
+ *
+ * With indexLater, only hashes go out with the batches. The index entries
+ * are collected by index key and written afterwards with one SADD or ZADD per
+ * key, whenever indexBufferSize of them are pending and at the end of the
+ * load. Until then the imported models cannot be found through their
+ * indexes.
+ *
+ * A failed batch stops the load: batches already in flight are finished and
+ * the failure is thrown from load().
+ */
+public class JOhmBulkLoader {
+	/**
+	 * Told about the progress of a load after every batch written, from the
+	 * thread that wrote it.
+	 */
+	public static interface ProgressListener {
+		void onProgress(Progress progress);
+	}
+
+	/**
+	 * How far a load has got.
+	 */
+	public static final class Progress {
+		private final long loaded;
+		private final long elapsedMillis;
+
+		Progress(long loaded, long elapsedMillis) {
+			this.loaded = loaded;
+			this.elapsedMillis = elapsedMillis;
+		}
+
+		public long getLoaded() {
+			return loaded;
+		}
+
+		public long getElapsedMillis() {
+			return elapsedMillis;
+		}
+
+		/**
+		 * Models written per second so far.
+		 */
+		public double getThroughput() {
+			return elapsedMillis == 0 ? loaded : loaded * 1000.0 / elapsedMillis;
+		}
+
+		@Override
+		public String toString() {
+			return loaded + " models in " + elapsedMillis + " ms ("
+			    + Math.round(getThroughput()) + "/s)";
+		}
+	}
+
+	private final int pipelineDepth;
+	private final int inFlightBatches;
+	private boolean indexLater;
+	private int indexBufferSize = 100000;
+	private ProgressListener progressListener;
+
+	public JOhmBulkLoader(int pipelineDepth, int inFlightBatches) {
+		if (pipelineDepth <= 0 || inFlightBatches <= 0) {
+			throw new JOhmException(
+			    "Pipeline depth and in-flight batches must be positive",
+			    JOhmExceptionMeta.ILLEGAL_ARGUMENT_EXCEPTION);
+		}
+		this.pipelineDepth = pipelineDepth;
+		this.inFlightBatches = inFlightBatches;
+	}
+
+	public JOhmBulkLoader setIndexLater(boolean indexLater) {
+		this.indexLater = indexLater;
+		return this;
+	}
+
+	public JOhmBulkLoader setIndexBufferSize(int indexBufferSize) {
+		if (indexBufferSize <= 0) {
+			throw new JOhmException("Index buffer size must be positive",
+			    JOhmExceptionMeta.ILLEGAL_ARGUMENT_EXCEPTION);
+		}
+		this.indexBufferSize = indexBufferSize;
+		return this;
+	}
+
+	public JOhmBulkLoader setProgressListener(ProgressListener progressListener) {
+		this.progressListener = progressListener;
+		return this;
+	}
+
+	public Progress load(final Iterable<?> source) {
+		return load(source.iterator());
+	}
+
+	public Progress load(final Iterator<?> source) {
+		final long start = System.currentTimeMillis();
+		final AtomicLong loaded = new AtomicLong();
+		final AtomicReference<RuntimeException> failure = new AtomicReference<RuntimeException>();
+		final DeferredIndexes deferredIndexes = indexLater ? new DeferredIndexes(
+		    indexBufferSize) : null;
+		final Semaphore slots = new Semaphore(inFlightBatches);
+		ExecutorService writers = Executors.newFixedThreadPool(inFlightBatches);
+		try {
+			while (source.hasNext() && failure.get() == null) {
+				final List<Object> batch = new ArrayList<Object>(pipelineDepth);
+				while (source.hasNext() && batch.size() < pipelineDepth) {
+					batch.add(source.next());
+				}
+				slots.acquire();
+				writers.execute(new Runnable() {
+					public void run() {
+						try {
+							if (failure.get() == null) {
+								JOhm.saveBatch(batch, deferredIndexes);
+								long done = loaded.addAndGet(batch.size());
+								if (progressListener != null) {
+									progressListener.onProgress(new Progress(done, System
+									    .currentTimeMillis() - start));
+								}
+							}
+						} catch (RuntimeException e) {
+							failure.compareAndSet(null, e);
+						} finally {
+							slots.release();
+						}
+					}
+				});
+			}
+			// Wait for the batches in flight
+			slots.acquire(inFlightBatches);
+			slots.release(inFlightBatches);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			failure.compareAndSet(null, new JOhmException(e,
+			    JOhmExceptionMeta.GENERIC_EXCEPTION));
+		} finally {
+			writers.shutdown();
+		}
+		try {
+			writers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		// Index what was written, even if the load failed
+		if (deferredIndexes != null) {
+			deferredIndexes.flush();
+		}
+		if (failure.get() != null) {
+			throw failure.get();
+		}
+		return new Progress(loaded.get(), System.currentTimeMillis() - start);
+	}
+}
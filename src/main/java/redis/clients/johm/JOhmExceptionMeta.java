@@ -29,7 +29,10 @@ public enum JOhmExceptionMeta {
     INVALID_COLLECTION_SUBTYPE("Field is invalid subtype of its corresponding Collection super-interface"),
     INVALID_COLLECTION_ANNOTATION("Field has invalid Collection annotations"),
     NULL_OR_EMPTY_VALUE_HASH_TAG("Field is HashTag and has null or empty value"),
-    INVALID_ARRAY_BOUNDS("Field has an actual length greater that annotated array bound");
+    INVALID_ARRAY_BOUNDS("Field has an actual length greater that annotated array bound"),
+    INVALID_LAZY_REFERENCE("Lazy Reference must be declared as a LazyReference of a Model"),
+    PARTIAL_MODEL("Model was loaded with a projection and cannot be saved"),
+    SESSION_ALREADY_OPEN("A JOhmSession is already open on this thread");
 
     private final String message;
 
@@ -0,0 +1,118 @@
+package redis.clients.johm;
+
+import java.io.Closeable;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * JOhmSession is a unit of work bound to the current thread. While it is open
+ * every model JOhm loads on that thread goes through its identity map: a given
+ * Class type and id is read from Redis at most once and always resolves to
+ * the same instance, whether it comes from get(), find(), getAll(), a
+ * Reference or one of the JOhm collections.
+ *
+ * The first load of a model decides how far its References were followed; a
+ * later load with a deeper FetchPlan returns the instance as it already is.
+ * Models saved or deleted through JOhm in the session are kept in step, but
+ * changes made by anyone else are not seen until the session is closed.
+ *
+ * <pre>
+ * JOhmSession session = JOhmSession.open();
+ * try {
+ *     ...
+ * } finally {
+ *     session.close();
+ * }
+ * </pre>
+ */
+public final class JOhmSession implements Closeable {
+	private static final ThreadLocal<JOhmSession> current = new ThreadLocal<JOhmSession>();
+
+	// Loaded models by Class:id, a null value marks a missing model
+	private final Map<String, Object> identityMap = new HashMap<String, Object>();
+
+	private JOhmSession() {
+	}
+
+	/**
+	 * Open a session on the current thread. Sessions do not nest.
+	 */
+	public static JOhmSession open() {
+		if (current.get() != null) {
+			throw new JOhmException(
+			    "A JOhmSession is already open on this thread",
+			    JOhmExceptionMeta.SESSION_ALREADY_OPEN);
+		}
+		JOhmSession session = new JOhmSession();
+		current.set(session);
+		return session;
+	}
+
+	/**
+	 * The session open on the current thread, or null.
+	 */
+	public static JOhmSession current() {
+		return current.get();
+	}
+
+	public void close() {
+		if (current.get() == this) {
+			current.remove();
+		}
+		identityMap.clear();
+	}
+
+	/**
+	 * Forget every model loaded so far, so that the next loads read Redis
+	 * again.
+	 */
+	public void clear() {
+		identityMap.clear();
+	}
+
+	public int size() {
+		return identityMap.size();
+	}
+
+	Map<String, Object> identityMap() {
+		return identityMap;
+	}
+
+	static void attach(final Object model, final long id) {
+		JOhmSession session = current.get();
+		if (session != null) {
+			session.identityMap.put(ModelCache.key(model.getClass(), id), model);
+		}
+	}
+
+	static void detachAll(final Class<?> clazz) {
+		JOhmSession session = current.get();
+		if (session != null) {
+			String prefix = clazz.getSimpleName() + ":";
+			Iterator<Map.Entry<String, Object>> entries = session.identityMap
+			    .entrySet().iterator();
+			while (entries.hasNext()) {
+				Map.Entry<String, Object> entry = entries.next();
+				if (entry.getKey().startsWith(prefix)) {
+					if (entry.getValue() != null) {
+						ModelState.forget(entry.getValue());
+					}
+					entries.remove();
+				}
+			}
+		}
+	}
+
+	static void detach(final Class<?> clazz, final long id) {
+		JOhmSession session = current.get();
+		if (session != null) {
+			Object model = session.identityMap.put(ModelCache.key(clazz, id),
+			    null);
+			if (model != null) {
+				// Saving it again has to write it whole
+				ModelState.forget(model);
+			}
+		}
+	}
+}
@@ -2,11 +2,14 @@ package redis.clients.johm;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -29,6 +32,9 @@ public final class JOhmUtils {
 
     public static Long getId(final Object model, boolean checkValidity) {
         Long id = null;
+        if (model instanceof LazyReference<?>) {
+            return ((LazyReference<?>) model).getId();
+        }
         if (model != null) {
             if (checkValidity) {
                 Validator.checkValidModel(model);
@@ -38,12 +44,70 @@ public final class JOhmUtils {
         return id;
     }
 
+    static boolean isLazyReference(final Field field) {
+        Reference reference = field.getAnnotation(Reference.class);
+        return reference != null && reference.fetch() == FetchType.LAZY;
+    }
+
+    /**
+     * The Model class a Reference field points to. A LazyReference field
+     * declares it as its type argument.
+     */
+    static Class<?> getReferenceClass(final Field field) {
+        if (!LazyReference.class.equals(field.getType())) {
+            return field.getType();
+        }
+        Type type = field.getGenericType();
+        if (type instanceof ParameterizedType) {
+            Type modelType = ((ParameterizedType) type)
+                    .getActualTypeArguments()[0];
+            if (modelType instanceof Class<?>) {
+                return (Class<?>) modelType;
+            }
+        }
+        throw new JOhmException(field.getName()
+                + " does not declare the Model it references",
+                JOhmExceptionMeta.INVALID_LAZY_REFERENCE);
+    }
+
+    /**
+     * The referenced model held by a Reference field value, loading it if it
+     * is an unloaded LazyReference.
+     */
+    static Object resolveReference(final Object value) {
+        if (value instanceof LazyReference<?>) {
+            return ((LazyReference<?>) value).get();
+        }
+        return value;
+    }
+
+    /**
+     * The referenced model held by a Reference field value if it is in memory,
+     * null for an unloaded LazyReference.
+     */
+    static Object loadedReference(final Object value) {
+        if (value instanceof LazyReference<?>) {
+            LazyReference<?> lazyReference = (LazyReference<?>) value;
+            return lazyReference.isLoaded() ? lazyReference.get() : null;
+        }
+        return value;
+    }
+
     static boolean isNew(final Object model) {
         return getId(model) == null;
     }
 
-    @SuppressWarnings("unchecked")
     static void initCollections(final Object model, final Nest<?> nest) {
+        initCollections(model, nest, null);
+    }
+
+    /**
+     * Set the collection proxies of the given model, restricted to the named
+     * fields unless fieldNames is null.
+     */
+    @SuppressWarnings("unchecked")
+    static void initCollections(final Object model, final Nest<?> nest,
+            final Set<String> fieldNames) {
         if (model == null || nest == null) {
             return;
         }
@@ -64,6 +128,9 @@ public final class JOhmUtils {
         for (Field field : fields) {
         	field.setAccessible(true);
         	fieldNameForCache = field.getName();
+        	if (fieldNames != null && !fieldNames.contains(fieldNameForCache)) {
+        		continue;
+        	}
         	if (metaDataOfClass != null) {
         		isCollectionList = metaDataOfClass.collectionListFields.containsKey(fieldNameForCache);
         		isCollectionSet = metaDataOfClass.collectionSetFields.containsKey(fieldNameForCache);
@@ -243,6 +310,26 @@ public final class JOhmUtils {
         return false;
     }
 
+    /**
+     * Load the models behind the given ids in one batch, keyed by id. Used by
+     * the JOhm collections so that iterating them costs one round trip per
+     * reference level instead of one per element. Missing models are absent
+     * from the result.
+     */
+    public static <T> Map<String, T> loadModels(final Class<?> clazz,
+            final Collection<String> ids) {
+        long[] modelIds = new long[ids.size()];
+        int i = 0;
+        for (String id : ids) {
+            modelIds[i++] = Long.parseLong(id);
+        }
+        Map<String, T> models = new HashMap<String, T>();
+        for (T model : JOhm.<T> get(clazz, modelIds)) {
+            models.put(String.valueOf(getId(model, false)), model);
+        }
+        return models;
+    }
+
     public static List<Field> gatherAllFields(Class<?> clazz) {
         List<Field> allFields = new ArrayList<Field>();
         for (Field field : clazz.getDeclaredFields()) {
@@ -592,6 +679,19 @@ public final class JOhmUtils {
             }
             if (isReference) {
                 checkValidReference(field);
+                checkValidLazyReference(field);
+            }
+        }
+
+        static void checkValidLazyReference(final Field field) {
+            boolean isHolder = LazyReference.class.equals(field.getType());
+            if (isLazyReference(field) != isHolder) {
+                throw new JOhmException(field.getName()
+                        + " must be a LazyReference if and only if it is fetched lazily",
+                        JOhmExceptionMeta.INVALID_LAZY_REFERENCE);
+            }
+            if (isHolder) {
+                getReferenceClass(field);
             }
         }
         
@@ -0,0 +1,104 @@
+package redis.clients.johm;
+
+/**
+ * LazyReference is the holder type of a Reference declared with
+ * fetch = FetchType.LAZY. Loading the owning model only stores the id of the
+ * referenced model; the model itself is read from Redis on the first call to
+ * get().
+ * 
+ * <pre>
+ * &#064;Reference(fetch = FetchType.LAZY)
+ * private LazyReference&lt;Country&gt; country;
+ * </pre>
+ * 
+ * Like the JOhm collections, it does not lock and is not thread-safe.
+ */
+public final class LazyReference<T> {
+    private final Class<? extends T> clazz;
+    private final Long id;
+    private T model;
+    private boolean loaded;
+
+    LazyReference(Class<? extends T> clazz, long id) {
+        this.clazz = clazz;
+        this.id = id;
+    }
+
+    @SuppressWarnings("unchecked")
+    private LazyReference(T model) {
+        this.clazz = (Class<? extends T>) model.getClass();
+        this.id = null;
+        this.model = model;
+        this.loaded = true;
+    }
+
+    static <T> LazyReference<T> unloaded(Class<T> clazz, long id) {
+        return new LazyReference<T>(clazz, id);
+    }
+
+    /**
+     * Wrap an already loaded model, e.g. to set it on a lazy Reference field
+     * before saving the owner.
+     */
+    public static <T> LazyReference<T> of(T model) {
+        if (model == null) {
+            return null;
+        }
+        return new LazyReference<T>(model);
+    }
+
+    /**
+     * The referenced model, read from Redis on the first call.
+     */
+    public T get() {
+        if (!loaded) {
+            model = JOhm.<T> get(clazz, id);
+            loaded = true;
+        }
+        return model;
+    }
+
+    /**
+     * The id of the referenced model. This never loads the model.
+     */
+    public Long getId() {
+        if (id != null) {
+            return id;
+        }
+        return JOhmUtils.getId(model);
+    }
+
+    public Class<? extends T> getModelClass() {
+        return clazz;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    @Override
+    public int hashCode() {
+        Long referencedId = getId();
+        return 31 * clazz.hashCode()
+                + (referencedId == null ? 0 : referencedId.hashCode());
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof LazyReference<?>)) {
+            return false;
+        }
+        LazyReference<?> other = (LazyReference<?>) obj;
+        Long referencedId = getId();
+        return clazz.equals(other.clazz) && referencedId != null
+                && referencedId.equals(other.getId());
+    }
+
+    @Override
+    public String toString() {
+        return clazz.getSimpleName() + ":" + getId();
+    }
+}
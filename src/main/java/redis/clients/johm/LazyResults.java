@@ -0,0 +1,169 @@
+package redis.clients.johm;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import redis.clients.jedis.ScanParams;
+import redis.clients.jedis.ScanResult;
+
+/**
+ * LazyResults are the matches of JOhm.findLazy(). Models are not read until
+ * they are iterated, and then pageSize at a time with one pipeline per page,
+ * so only the current page is held besides the ids. Matches that are deleted
+ * before their page is read are skipped.
+ *
+ * Results scanning an index set walk it with SSCAN: a model indexed or
+ * unindexed while they are iterated may or may not show up, as with SSCAN
+ * itself. Every call to iterator() starts over. close() stops the iterators
+ * and drops the ids held.
+ */
+public class LazyResults<T> implements Iterable<T>, Closeable {
+	private final Class<?> clazz;
+	private final FetchPlan fetchPlan;
+	private final int pageSize;
+	// Either the index set scanned, or the ids of the matches
+	private final String indexKey;
+	private Collection<String> ids;
+	private volatile boolean closed;
+
+	private LazyResults(Class<?> clazz, FetchPlan fetchPlan, String indexKey,
+	    Collection<String> ids, int pageSize) {
+		if (pageSize <= 0) {
+			throw new JOhmException("Page size must be positive",
+			    JOhmExceptionMeta.ILLEGAL_ARGUMENT_EXCEPTION);
+		}
+		this.clazz = clazz;
+		this.fetchPlan = fetchPlan == null ? FetchPlan.ALL : fetchPlan;
+		this.indexKey = indexKey;
+		this.ids = ids;
+		this.pageSize = pageSize;
+	}
+
+	static <T> LazyResults<T> scanning(Class<?> clazz, FetchPlan fetchPlan,
+	    String indexKey, int pageSize) {
+		return new LazyResults<T>(clazz, fetchPlan, indexKey, null, pageSize);
+	}
+
+	static <T> LazyResults<T> of(Class<?> clazz, FetchPlan fetchPlan,
+	    Collection<String> ids, int pageSize) {
+		return new LazyResults<T>(clazz, fetchPlan, null, ids, pageSize);
+	}
+
+	public Iterator<T> iterator() {
+		if (closed) {
+			return Collections.<T> emptyList().iterator();
+		}
+		return new PageIterator(indexKey != null ? new ScannedIds() : new HeldIds(
+		    ids));
+	}
+
+	public void close() {
+		closed = true;
+		ids = null;
+	}
+
+	/**
+	 * Supplies the ids of the matches a page at a time.
+	 */
+	private static interface IdPages {
+		/**
+		 * The ids of the next page, or null when there are no more.
+		 */
+		List<String> next();
+	}
+
+	private final class HeldIds implements IdPages {
+		private final Iterator<String> remaining;
+
+		HeldIds(Collection<String> ids) {
+			this.remaining = ids.iterator();
+		}
+
+		public List<String> next() {
+			if (!remaining.hasNext()) {
+				return null;
+			}
+			List<String> page = new ArrayList<String>(pageSize);
+			while (remaining.hasNext() && page.size() < pageSize) {
+				page.add(remaining.next());
+			}
+			return page;
+		}
+	}
+
+	private final class ScannedIds implements IdPages {
+		private final Nest nest = new Nest(indexKey);
+		private String cursor = ScanParams.SCAN_POINTER_START;
+		private boolean started;
+		// SSCAN can return an element more than once
+		private final Set<String> seen = new HashSet<String>();
+
+		ScannedIds() {
+			JOhm.setPool(nest);
+		}
+
+		public List<String> next() {
+			List<String> page = new ArrayList<String>();
+			// COUNT is only a hint, a step can return nothing
+			while (page.isEmpty()) {
+				if (started && ScanParams.SCAN_POINTER_START.equals(cursor)) {
+					return null;
+				}
+				ScanResult<String> step = nest.sscan(cursor, pageSize);
+				started = true;
+				cursor = step.getStringCursor();
+				for (String id : step.getResult()) {
+					if (seen.add(id)) {
+						page.add(id);
+					}
+				}
+			}
+			return page;
+		}
+	}
+
+	private final class PageIterator implements Iterator<T> {
+		private final IdPages pages;
+		private Iterator<T> page = Collections.<T> emptyList().iterator();
+
+		PageIterator(IdPages pages) {
+			this.pages = pages;
+		}
+
+		public boolean hasNext() {
+			while (!page.hasNext()) {
+				if (closed) {
+					return false;
+				}
+				List<String> ids = pages.next();
+				if (ids == null) {
+					return false;
+				}
+				long[] pageIds = new long[ids.size()];
+				for (int i = 0; i < pageIds.length; i++) {
+					pageIds[i] = Long.parseLong(ids.get(i));
+				}
+				page = JOhm.<T> get(clazz, fetchPlan, pageIds).iterator();
+			}
+			return true;
+		}
+
+		public T next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			return page.next();
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
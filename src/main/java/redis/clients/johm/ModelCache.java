@@ -0,0 +1,101 @@
+package redis.clients.johm;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * ModelCache is an optional in-process near cache sitting in front of
+ * JOhm.get(). It keeps the persisted hash of recently read models, keyed by
+ * model class and id, so that hot read-mostly models are hydrated without
+ * touching Redis. Every load still builds a fresh model instance from the
+ * cached hash; instances are never shared through the cache.
+ * 
+ * Entries are evicted by size and by age. JOhm invalidates the entry of a
+ * model whenever it saves or deletes it, or mutates one of its collections,
+ * through this JVM. Changes made by other processes are only seen once the
+ * entry expires.
+ * 
+ * A load that races an invalidation of the same key does not cache what it
+ * read: every invalidation bumps a generation, per stripe of keys, and the
+ * hash is only cached if the generation taken before the read still holds.
+ * 
+ * Install it with JOhm.setCache().
+ */
+public class ModelCache {
+	private static final int STRIPES = 1024;
+
+	private final Cache<String, Map<String, String>> hashes;
+	private final AtomicLongArray generations = new AtomicLongArray(STRIPES);
+	private final AtomicLong clearings = new AtomicLong();
+
+	public ModelCache(long maximumSize, long timeToLive, TimeUnit unit) {
+		hashes = CacheBuilder.newBuilder().maximumSize(maximumSize)
+		    .expireAfterWrite(timeToLive, unit).recordStats().build();
+	}
+
+	static String key(Class<?> clazz, long id) {
+		return clazz.getSimpleName() + ":" + id;
+	}
+
+	Map<String, String> get(String key) {
+		return hashes.getIfPresent(key);
+	}
+
+	/**
+	 * The generation of a key, to take before its hash is read from Redis.
+	 */
+	long generation(String key) {
+		return generations.get(stripe(key)) + clearings.get();
+	}
+
+	/**
+	 * Cache a hash read from Redis, unless the key was invalidated since the
+	 * given generation was taken. An invalidation landing during the put
+	 * undoes it.
+	 */
+	void put(String key, Map<String, String> hashedObject, long generation) {
+		if (generation(key) != generation) {
+			return;
+		}
+		hashes.put(key, ImmutableMap.copyOf(hashedObject));
+		if (generation(key) != generation) {
+			hashes.invalidate(key);
+		}
+	}
+
+	public void invalidate(Class<?> clazz, long id) {
+		invalidate(key(clazz, id));
+	}
+
+	public void invalidate(String key) {
+		generations.incrementAndGet(stripe(key));
+		hashes.invalidate(key);
+	}
+
+	public void invalidateAll() {
+		clearings.incrementAndGet();
+		hashes.invalidateAll();
+	}
+
+	private static int stripe(String key) {
+		return (key.hashCode() & Integer.MAX_VALUE) % STRIPES;
+	}
+
+	public long size() {
+		return hashes.size();
+	}
+
+	/**
+	 * Hit, miss and eviction counters since the cache was created.
+	 */
+	public CacheStats stats() {
+		return hashes.stats();
+	}
+}
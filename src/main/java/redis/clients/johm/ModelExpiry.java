@@ -0,0 +1,89 @@
+package redis.clients.johm;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import redis.clients.jedis.RedisPipeline;
+
+/**
+ * ModelExpiry writes the time to live of models whose Class type is annotated
+ * with Expire, and tracks when they expire in the sorted set Class:_expiry,
+ * scored by expiry time in milliseconds. Only the hash is given a TTL: the
+ * IndexManifest has to outlive it so that the indexes can be cleaned up.
+ */
+final class ModelExpiry {
+	static final String SUFFIX = "_expiry";
+
+	private ModelExpiry() {
+	}
+
+	/**
+	 * The time to live of the given Class type in seconds, or 0 if its models
+	 * do not expire.
+	 */
+	static int seconds(final Class<?> clazz) {
+		Expire expire = clazz.getAnnotation(Expire.class);
+		return expire == null ? 0 : expire.value();
+	}
+
+	static String key(final Class<?> clazz) {
+		return new Nest(clazz).cat(SUFFIX).key();
+	}
+
+	/**
+	 * Set the TTL of a model just written and record its expiry time; does
+	 * nothing for Class types that do not expire.
+	 */
+	static void writeTo(final RedisPipeline pipelined, final Class<?> clazz,
+	    final long id) {
+		int seconds = seconds(clazz);
+		if (seconds <= 0) {
+			return;
+		}
+		pipelined.expire(new Nest(clazz).cat(id).key(), seconds);
+		pipelined.zadd(key(clazz), System.currentTimeMillis() + seconds * 1000L,
+		    String.valueOf(id));
+	}
+
+	/**
+	 * The writes of writeTo() as a PipelinedWrite, or null for Class types
+	 * that do not expire.
+	 */
+	static JOhm.PipelinedWrite write(final Class<?> clazz, final long id) {
+		if (seconds(clazz) <= 0) {
+			return null;
+		}
+		return new JOhm.PipelinedWrite() {
+			void writeTo(RedisPipeline pipelined) {
+				ModelExpiry.writeTo(pipelined, clazz, id);
+			}
+		};
+	}
+
+	/**
+	 * Those of the given ids whose hash is gone, checked in one pipeline.
+	 * Always empty for Class types that do not expire.
+	 */
+	static List<String> expired(final Class<?> clazz,
+	    final Collection<String> ids) {
+		List<String> expired = new ArrayList<String>();
+		if (seconds(clazz) <= 0 || ids.isEmpty()) {
+			return expired;
+		}
+		List<String> idList = new ArrayList<String>(ids);
+		List<String> hashKeys = new ArrayList<String>(idList.size());
+		for (String id : idList) {
+			hashKeys.add(new Nest(clazz).cat(id).key());
+		}
+		Nest nest = new Nest(clazz);
+		JOhm.setPool(nest);
+		List<Boolean> exist = nest.exists(hashKeys);
+		for (int i = 0; i < idList.size(); i++) {
+			if (!Boolean.TRUE.equals(exist.get(i))) {
+				expired.add(idList.get(i));
+			}
+		}
+		return expired;
+	}
+}
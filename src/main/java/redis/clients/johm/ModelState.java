@@ -0,0 +1,178 @@
+package redis.clients.johm;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.google.common.collect.MapMaker;
+import com.google.common.collect.Multimap;
+
+/**
+ * ModelState is the bookkeeping JOhm keeps about a model instance it loaded,
+ * without requiring anything from the model class itself. States are held
+ * weakly by model identity and vanish with their models.
+ */
+final class ModelState {
+	private static final ConcurrentMap<Object, ModelState> states = new MapMaker()
+	    .weakKeys().makeMap();
+	private static final int STRIPES = 1024;
+
+	/**
+	 * Deletions made by this JVM, counted per stripe of Class:id keys, and
+	 * purges. A snapshot taken before a deletion of its stripe is dropped, as
+	 * the model it describes may no longer be in Redis.
+	 */
+	private static final AtomicLongArray deletions = new AtomicLongArray(
+	    STRIPES);
+	private static final AtomicLong purges = new AtomicLong();
+
+	/**
+	 * Names of the fields loaded by a projection, null when the model was
+	 * fully loaded.
+	 */
+	volatile Set<String> loadedFields;
+
+	/**
+	 * What the model looked like in Redis when it was last loaded or saved,
+	 * null when it is unknown.
+	 */
+	private volatile Snapshot snapshot;
+
+	/**
+	 * The deletions counted for the model when its snapshot was read.
+	 */
+	private volatile long deletionsSeen;
+
+	static ModelState of(final Object model) {
+		ModelState state = states.get(model);
+		if (state == null) {
+			state = new ModelState();
+			ModelState existing = states.putIfAbsent(model, state);
+			if (existing != null) {
+				state = existing;
+			}
+		}
+		return state;
+	}
+
+	static ModelState peek(final Object model) {
+		return states.get(model);
+	}
+
+	/**
+	 * The snapshot of a model, null when it is unknown or the model may have
+	 * been deleted since. Models of a Class type annotated with Expire never
+	 * have one, as Redis may have expired their hash without JOhm knowing.
+	 */
+	static Snapshot snapshot(final Object model) {
+		ModelState state = states.get(model);
+		if (state == null || ModelExpiry.seconds(model.getClass()) > 0) {
+			return null;
+		}
+		Snapshot snapshot = state.snapshot;
+		if (snapshot != null
+		    && state.deletionsSeen != deletions(model.getClass(),
+		        JOhmUtils.getId(model))) {
+			state.snapshot = null;
+			return null;
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Remember what a model looks like in Redis, as read or written after the
+	 * given count of deletions().
+	 */
+	static void remember(final Object model, final Snapshot snapshot,
+	    final long deletionsSeen) {
+		ModelState state = of(model);
+		state.deletionsSeen = deletionsSeen;
+		state.snapshot = snapshot;
+	}
+
+	static void forget(final Object model) {
+		ModelState state = states.get(model);
+		if (state != null) {
+			state.snapshot = null;
+		}
+	}
+
+	/**
+	 * The deletions counted for a model; take it before reading or writing the
+	 * model for remember().
+	 */
+	static long deletions(final Class<?> clazz, final Long id) {
+		return deletions.get(stripe(clazz, id)) + purges.get();
+	}
+
+	/**
+	 * Count the deletion of a model, once it is gone from Redis.
+	 */
+	static void deleted(final Class<?> clazz, final Long id) {
+		deletions.incrementAndGet(stripe(clazz, id));
+	}
+
+	static void purged() {
+		purges.incrementAndGet();
+	}
+
+	private static int stripe(final Class<?> clazz, final Long id) {
+		return ((clazz.getSimpleName() + ":" + id).hashCode() & Integer.MAX_VALUE)
+		    % STRIPES;
+	}
+
+	static boolean isPartial(final Object model) {
+		ModelState state = states.get(model);
+		return state != null && state.loadedFields != null;
+	}
+
+	/**
+	 * The persisted hash of a model and the index entries it is a member of.
+	 * Index keys are flattened out of the multimaps save() builds, where a
+	 * hashTag key maps to the index keys of its fields and any other key is
+	 * the index key itself.
+	 */
+	static final class Snapshot {
+		final Map<String, String> hash;
+		final Set<String> sets = new HashSet<String>();
+		final Map<String, Double> sortedSets = new HashMap<String, Double>();
+
+		private Snapshot(Map<String, String> hash) {
+			this.hash = new HashMap<String, String>(hash);
+		}
+
+		/**
+		 * A snapshot of index keys already flattened, as an IndexManifest
+		 * lists them.
+		 */
+		static Snapshot of(Map<String, String> hash, Collection<String> sets,
+		    Map<String, Double> sortedSets) {
+			Snapshot snapshot = new Snapshot(hash);
+			snapshot.sets.addAll(sets);
+			snapshot.sortedSets.putAll(sortedSets);
+			return snapshot;
+		}
+
+		static Snapshot of(Map<String, String> hashedObject,
+		    Multimap<String, String> memberToBeAddedToSets,
+		    Multimap<String, ScoreField> memberToBeAddedToSortedSets) {
+			Snapshot snapshot = new Snapshot(hashedObject);
+			for (Map.Entry<String, String> entry : memberToBeAddedToSets.entries()) {
+				snapshot.sets.add(JOhm.isHashTag(entry.getKey()) ? entry.getValue()
+				    : entry.getKey());
+			}
+			for (Map.Entry<String, ScoreField> entry : memberToBeAddedToSortedSets
+			    .entries()) {
+				snapshot.sortedSets.put(JOhm.isHashTag(entry.getKey()) ? entry
+				    .getValue().getKey() : entry.getKey(), entry.getValue()
+				    .getScore());
+			}
+			return snapshot;
+		}
+	}
+}
@@ -1,6 +1,7 @@
 package redis.clients.johm;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -8,10 +9,16 @@ import java.util.Set;
 
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPubSub;
 import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.RedisPipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.ScanParams;
+import redis.clients.jedis.ScanResult;
 import redis.clients.jedis.ShardedJedis;
 import redis.clients.jedis.ShardedJedisPipeline;
 import redis.clients.jedis.ShardedJedisPool;
+import redis.clients.jedis.SortingParams;
 import redis.clients.jedis.Transaction;
 import redis.clients.jedis.TransactionBlock;
 import redis.clients.jedis.ZParams;
@@ -117,6 +124,14 @@ public class Nest<T> {
         return this;
     }
     
+    public Nest<T> next(String key) {
+        if(keys==null) {
+            keys=new java.util.ArrayList<String>();
+        }
+        keys.add(key);
+        return this;
+    }
+
     public Nest<T> next() {
         if(keys==null) {
             keys=new java.util.ArrayList<String>();
@@ -249,6 +264,47 @@ public class Nest<T> {
 		}
 	}
 
+	public Long incrBy(long increment) {
+		Boolean ex = false;
+		if (isSharded) {
+			ShardedJedis jedis = null;
+			try {
+				jedis = getShardedResource();
+				Long incr = jedis.incrBy(key(), increment);
+				return incr;
+			} catch (Exception e) {
+				e.printStackTrace();
+				ex = true;
+				if (jedis != null) {
+					returnBrokenShardedResource(jedis);
+				}
+				throw new JOhmException(e.getMessage(), JOhmExceptionMeta.GENERIC_EXCEPTION);
+		    } finally {
+				if (jedis != null && !ex) {
+					returnShardedResource(jedis);
+				}
+			}
+		} else {
+			Jedis jedis = null;
+			try {
+				jedis = getResource();
+				Long incr = jedis.incrBy(key(), increment);
+				return incr;
+			} catch (Exception e) {
+				e.printStackTrace();
+				ex = true;
+				if (jedis != null) {
+					returnBrokenResource(jedis);
+				}
+				throw new JOhmException(e.getMessage(), JOhmExceptionMeta.GENERIC_EXCEPTION);
+		    } finally {
+				if (jedis != null && !ex) {
+					returnResource(jedis);
+				}
+			}
+		}
+	}
+
 	/**
 	 * multi for ShardedJedis. It returns Transaction for given keys.
 	 * The keys should have the same hashtag
@@ -318,6 +374,47 @@ public class Nest<T> {
     	}
     }
 
+	public Long expire(int seconds) {
+		Boolean ex = false;
+		if (isSharded) {
+			ShardedJedis jedis = null;
+			try {
+				jedis = getShardedResource();
+				Long expire = jedis.expire(key(), seconds);
+				return expire;
+			} catch (Exception e) {
+				e.printStackTrace();
+				ex = true;
+				if (jedis != null) {
+					returnBrokenShardedResource(jedis);
+				}
+				throw new JOhmException(e.getMessage(), JOhmExceptionMeta.GENERIC_EXCEPTION);
+		    } finally {
+				if (jedis != null && !ex) {
+					returnShardedResource(jedis);
+				}
+			}
+		} else {
+			Jedis jedis = null;
+			try {
+				jedis = getResource();
+				Long expire = jedis.expire(key(), seconds);
+				return expire;
+			} catch (Exception e) {
+				e.printStackTrace();
+				ex = true;
+				if (jedis != null) {
+					returnBrokenResource(jedis);
+				}
+				throw new JOhmException(e.getMessage(), JOhmExceptionMeta.GENERIC_EXCEPTION);
+		    } finally {
+				if (jedis != null && !ex) {
+					returnResource(jedis);
+				}
+			}
+		}
+	}
+
 	public Long del() {
 		Boolean ex = false;
 		if (isSharded) {
@@ -444,6 +541,63 @@ public class Nest<T> {
 		}
 	}
 
+	/**
+	 * Tell, in one pipeline, which of the given keys exist.
+	 */
+	public List<Boolean> exists(List<String> keys) {
+		List<Response<Boolean>> responses = new ArrayList<Response<Boolean>>(
+				keys.size());
+		Boolean ex = false;
+		if (isSharded) {
+			ShardedJedis jedis = null;
+			try {
+				jedis = getShardedResource();
+				ShardedJedisPipeline pipeline = jedis.pipelined();
+				for (String key : keys) {
+					responses.add(pipeline.exists(key));
+				}
+				pipeline.sync();
+			} catch (Exception e) {
+				e.printStackTrace();
+				ex = true;
+				if (jedis != null) {
+					returnBrokenShardedResource(jedis);
+				}
+				throw new JOhmException(e.getMessage(), JOhmExceptionMeta.GENERIC_EXCEPTION);
+		    } finally {
+				if (jedis != null && !ex) {
+					returnShardedResource(jedis);
+				}
+			}
+		} else {
+			Jedis jedis = null;
+			try {
+				jedis = getResource();
+				Pipeline pipeline = jedis.pipelined();
+				for (String key : keys) {
+					responses.add(pipeline.exists(key));
+				}
+				pipeline.sync();
+			} catch (Exception e) {
+				e.printStackTrace();
+				ex = true;
+				if (jedis != null) {
+					returnBrokenResource(jedis);
+				}
+				throw new JOhmException(e.getMessage(), JOhmExceptionMeta.GENERIC_EXCEPTION);
+		    } finally {
+				if (jedis != null && !ex) {
+					returnResource(jedis);
+				}
+			}
+		}
+		List<Boolean> exist = new ArrayList<Boolean>(responses.size());
+		for (Response<Boolean> response : responses) {
+			exist.add(response.get());
+		}
+		return exist;
+	}
+
 	// Redis Hash Operations
 	public String hmset(Map<String, String> hash) {
 		Boolean ex = false;
@@ -571,6 +725,128 @@ public class Nest<T> {
 		}
 	}
 
+	/**
+	 * HGETALL for several keys in one pipeline. The hashes are returned in the
+	 * order of the given keys; a missing key yields an empty map. On a
+	 * ShardedJedisPool the sharded pipeline groups the commands per shard.
+	 *
+	 * @param keys
+	 * @return
+	 */
+	public List<Map<String, String>> hgetAll(List<String> keys) {
+		List<Response<Map<String, String>>> responses = new ArrayList<Response<Map<String, String>>>(
+				keys.size());
+		Boolean ex = false;
+		if (isSharded) {
+			ShardedJedis jedis = null;
+			try {
+				jedis = getShardedResource();
+				ShardedJedisPipeline pipeline = jedis.pipelined();
+				for (String key : keys) {
+					responses.add(pipeline.hgetAll(key));
+				}
+				pipeline.sync();
+			} catch (Exception e) {
+				e.printStackTrace();
+				ex = true;
+				if (jedis != null) {
+					returnBrokenShardedResource(jedis);
+				}
+				throw new JOhmException(e.getMessage(), JOhmExceptionMeta.GENERIC_EXCEPTION);
+		    } finally {
+				if (jedis != null && !ex) {
+					returnShardedResource(jedis);
+				}
+			}
+		} else {
+			Jedis jedis = null;
+			try {
+				jedis = getResource();
+				Pipeline pipeline = jedis.pipelined();
+				for (String key : keys) {
+					responses.add(pipeline.hgetAll(key));
+				}
+				pipeline.sync();
+			} catch (Exception e) {
+				e.printStackTrace();
+				ex = true;
+				if (jedis != null) {
+					returnBrokenResource(jedis);
+				}
+				throw new JOhmException(e.getMessage(), JOhmExceptionMeta.GENERIC_EXCEPTION);
+		    } finally {
+				if (jedis != null && !ex) {
+					returnResource(jedis);
+				}
+			}
+		}
+		List<Map<String, String>> hashes = new ArrayList<Map<String, String>>(
+				responses.size());
+		for (Response<Map<String, String>> response : responses) {
+			hashes.add(response.get());
+		}
+		return hashes;
+	}
+
+	/**
+	 * HMGET of the given fields, sent in one pipeline with an EXISTS of the
+	 * hash so that a missing hash returns null instead of a list of nulls.
+	 *
+	 * @param fields
+	 * @return
+	 */
+	public List<String> hmget(String... fields) {
+		String key = key();
+		Response<Boolean> exists = null;
+		Response<List<String>> values = null;
+		Boolean ex = false;
+		if (isSharded) {
+			ShardedJedis jedis = null;
+			try {
+				jedis = getShardedResource();
+				ShardedJedisPipeline pipeline = jedis.pipelined();
+				exists = pipeline.exists(key);
+				values = pipeline.hmget(key, fields);
+				pipeline.sync();
+			} catch (Exception e) {
+				e.printStackTrace();
+				ex = true;
+				if (jedis != null) {
+					returnBrokenShardedResource(jedis);
+				}
+				throw new JOhmException(e.getMessage(), JOhmExceptionMeta.GENERIC_EXCEPTION);
+		    } finally {
+				if (jedis != null && !ex) {
+					returnShardedResource(jedis);
+				}
+			}
+		} else {
+			Jedis jedis = null;
+			try {
+				jedis = getResource();
+				Pipeline pipeline = jedis.pipelined();
+				exists = pipeline.exists(key);
+				values = pipeline.hmget(key, fields);
+				pipeline.sync();
+			} catch (Exception e) {
+				e.printStackTrace();
+				ex = true;
+				if (jedis != null) {
+					returnBrokenResource(jedis);
+				}
+				throw new JOhmException(e.getMessage(), JOhmExceptionMeta.GENERIC_EXCEPTION);
+		    } finally {
+				if (jedis != null && !ex) {
+					returnResource(jedis);
+				}
+			}
+		}
+		if (!exists.get()) {
+			return null;
+		}
+		return values.get();
+	}
+
 	public String hget(String field) {
 		Boolean ex = false;
 		if (isSharded) {
@@ -900,14 +1176,23 @@ public class Nest<T> {
 		}
 	}
 
-	public Set<String> smembers() {
+	/**
+	 * Read the members of several sets in one pipeline, in the order of the
+	 * given keys.
+	 */
+	public List<Set<String>> smembers(List<String> keys) {
+		List<Response<Set<String>>> responses = new ArrayList<Response<Set<String>>>(
+				keys.size());
 		Boolean ex = false;
 		if (isSharded) {
 			ShardedJedis jedis = null;
 			try {
 				jedis = getShardedResource();
-				Set<String> members = jedis.smembers(key());
-				return members;
+				ShardedJedisPipeline pipeline = jedis.pipelined();
+				for (String key : keys) {
+					responses.add(pipeline.smembers(key));
+				}
+				pipeline.sync();
 			} catch (Exception e) {
 				e.printStackTrace();
 				ex = true;
@@ -924,8 +1209,11 @@ public class Nest<T> {
 			Jedis jedis = null;
 			try {
 				jedis = getResource();
-				Set<String> members = jedis.smembers(key());
-				return members;
+				Pipeline pipeline = jedis.pipelined();
+				for (String key : keys) {
+					responses.add(pipeline.smembers(key));
+				}
+				pipeline.sync();
 			} catch (Exception e) {
 				e.printStackTrace();
 				ex = true;
@@ -939,15 +1227,21 @@ public class Nest<T> {
 				}
 			}
 		}
+		List<Set<String>> members = new ArrayList<Set<String>>(responses.size());
+		for (Response<Set<String>> response : responses) {
+			members.add(response.get());
+		}
+		return members;
 	}
-	
-	public Boolean sismember(String key, String member) {
+
+	public Set<String> smembers() {
 		Boolean ex = false;
 		if (isSharded) {
 			ShardedJedis jedis = null;
 			try {
 				jedis = getShardedResource();
-				return jedis.sismember(key, member);
+				Set<String> members = jedis.smembers(key());
+				return members;
 			} catch (Exception e) {
 				e.printStackTrace();
 				ex = true;
@@ -964,7 +1258,8 @@ public class Nest<T> {
 			Jedis jedis = null;
 			try {
 				jedis = getResource();
-				return jedis.sismember(key, member);
+				Set<String> members = jedis.smembers(key());
+				return members;
 			} catch (Exception e) {
 				e.printStackTrace();
 				ex = true;
@@ -980,13 +1275,19 @@ public class Nest<T> {
 		}
 	}
 	
-	public Long zrank(String key, String member) {
+	/**
+	 * One SSCAN step over this set, starting at the given cursor.
+	 */
+	public ScanResult<String> sscan(String cursor, int count) {
+		ScanParams params = new ScanParams().count(count);
 		Boolean ex = false;
 		if (isSharded) {
 			ShardedJedis jedis = null;
 			try {
 				jedis = getShardedResource();
-				return jedis.zrank(key, member);
+				ScanResult<String> page = jedis.getShard(key()).sscan(key(), cursor,
+				    params);
+				return page;
 			} catch (Exception e) {
 				e.printStackTrace();
 				ex = true;
@@ -1003,7 +1304,8 @@ public class Nest<T> {
 			Jedis jedis = null;
 			try {
 				jedis = getResource();
-				return jedis.zrank(key, member);
+				ScanResult<String> page = jedis.sscan(key(), cursor, params);
+				return page;
 			} catch (Exception e) {
 				e.printStackTrace();
 				ex = true;
@@ -1018,17 +1320,14 @@ public class Nest<T> {
 			}
 		}
 	}
-	
 
-	public Set<String> sinter() {
+	public Boolean sismember(String key, String member) {
 		Boolean ex = false;
 		if (isSharded) {
 			ShardedJedis jedis = null;
 			try {
 				jedis = getShardedResource();
-				Set<String> members = jedis.sinter((String[]) keys
-						.toArray(new String[0]));
-				return members;
+				return jedis.sismember(key, member);
 			} catch (Exception e) {
 				e.printStackTrace();
 				ex = true;
@@ -1045,9 +1344,7 @@ public class Nest<T> {
 			Jedis jedis = null;
 			try {
 				jedis = getResource();
-				Set<String> members = jedis.sinter((String[]) keys
-						.toArray(new String[0]));
-				return members;
+				return jedis.sismember(key, member);
 			} catch (Exception e) {
 				e.printStackTrace();
 				ex = true;
@@ -1062,15 +1359,14 @@ public class Nest<T> {
 			}
 		}
 	}
-
-	public void sinterstore(final String dstkey) {
+	
+	public Long zrank(String key, String member) {
 		Boolean ex = false;
 		if (isSharded) {
 			ShardedJedis jedis = null;
 			try {
 				jedis = getShardedResource();
-				jedis.sinterstore(dstkey,
-						(String[]) keys.toArray(new String[0]));
+				return jedis.zrank(key, member);
 			} catch (Exception e) {
 				e.printStackTrace();
 				ex = true;
@@ -1087,8 +1383,7 @@ public class Nest<T> {
 			Jedis jedis = null;
 			try {
 				jedis = getResource();
-				jedis.sinterstore(dstkey,
-						(String[]) keys.toArray(new String[0]));
+				return jedis.zrank(key, member);
 			} catch (Exception e) {
 				e.printStackTrace();
 				ex = true;
@@ -1103,16 +1398,101 @@ public class Nest<T> {
 			}
 		}
 	}
+	
 
-	// Redis List Operations
-	public Long rpush(String string) {
+	public Set<String> sinter() {
 		Boolean ex = false;
 		if (isSharded) {
 			ShardedJedis jedis = null;
 			try {
 				jedis = getShardedResource();
-				Long rpush = jedis.rpush(key(), string);
-				return rpush;
+				Set<String> members = jedis.sinter((String[]) keys
+						.toArray(new String[0]));
+				return members;
+			} catch (Exception e) {
+				e.printStackTrace();
+				ex = true;
+				if (jedis != null) {
+					returnBrokenShardedResource(jedis);
+				}
+				throw new JOhmException(e.getMessage(), JOhmExceptionMeta.GENERIC_EXCEPTION);
+		    } finally {
+				if (jedis != null && !ex) {
+					returnShardedResource(jedis);
+				}
+			}
+		} else {
+			Jedis jedis = null;
+			try {
+				jedis = getResource();
+				Set<String> members = jedis.sinter((String[]) keys
+						.toArray(new String[0]));
+				return members;
+			} catch (Exception e) {
+				e.printStackTrace();
+				ex = true;
+				if (jedis != null) {
+					returnBrokenResource(jedis);
+				}
+				throw new JOhmException(e.getMessage(), JOhmExceptionMeta.GENERIC_EXCEPTION);
+		    } finally {
+				if (jedis != null && !ex) {
+					returnResource(jedis);
+				}
+			}
+		}
+	}
+
+	public void sinterstore(final String dstkey) {
+		Boolean ex = false;
+		if (isSharded) {
+			ShardedJedis jedis = null;
+			try {
+				jedis = getShardedResource();
+				jedis.sinterstore(dstkey,
+						(String[]) keys.toArray(new String[0]));
+			} catch (Exception e) {
+				e.printStackTrace();
+				ex = true;
+				if (jedis != null) {
+					returnBrokenShardedResource(jedis);
+				}
+				throw new JOhmException(e.getMessage(), JOhmExceptionMeta.GENERIC_EXCEPTION);
+		    } finally {
+				if (jedis != null && !ex) {
+					returnShardedResource(jedis);
+				}
+			}
+		} else {
+			Jedis jedis = null;
+			try {
+				jedis = getResource();
+				jedis.sinterstore(dstkey,
+						(String[]) keys.toArray(new String[0]));
+			} catch (Exception e) {
+				e.printStackTrace();
+				ex = true;
+				if (jedis != null) {
+					returnBrokenResource(jedis);
+				}
+				throw new JOhmException(e.getMessage(), JOhmExceptionMeta.GENERIC_EXCEPTION);
+		    } finally {
+				if (jedis != null && !ex) {
+					returnResource(jedis);
+				}
+			}
+		}
+	}
+
+	// Redis List Operations
+	public Long rpush(String string) {
+		Boolean ex = false;
+		if (isSharded) {
+			ShardedJedis jedis = null;
+			try {
+				jedis = getShardedResource();
+				Long rpush = jedis.rpush(key(), string);
+				return rpush;
 			} catch (Exception e) {
 				e.printStackTrace();
 				ex = true;
@@ -1352,6 +1732,75 @@ public class Nest<T> {
 		}
 	}
 
+	/**
+	 * Replace this list with the given values in one pipeline, moving member
+	 * out of setsToLeave and into setsToJoin along the way.
+	 */
+	public void replaceList(final List<String> values, final String member,
+	    final Collection<String> setsToLeave,
+	    final Collection<String> setsToJoin) {
+		String key = key();
+		String[] elements = values.toArray(new String[values.size()]);
+		Boolean ex = false;
+		if (isSharded) {
+			ShardedJedis jedis = null;
+			try {
+				jedis = getShardedResource();
+				ShardedJedisPipeline pipelined = shardedJedisPipelined(jedis);
+				replaceList(pipelined, key, elements, member, setsToLeave,
+				    setsToJoin);
+				pipelined.sync();
+			} catch (Exception e) {
+				e.printStackTrace();
+				ex = true;
+				if (jedis != null) {
+					returnBrokenShardedResource(jedis);
+				}
+				throw new JOhmException(e.getMessage(), JOhmExceptionMeta.GENERIC_EXCEPTION);
+		    } finally {
+				if (jedis != null && !ex) {
+					returnShardedResource(jedis);
+				}
+			}
+		} else {
+			Jedis jedis = null;
+			try {
+				jedis = getResource();
+				Pipeline pipelined = pipelined(jedis);
+				replaceList(pipelined, key, elements, member, setsToLeave,
+				    setsToJoin);
+				pipelined.sync();
+			} catch (Exception e) {
+				e.printStackTrace();
+				ex = true;
+				if (jedis != null) {
+					returnBrokenResource(jedis);
+				}
+				throw new JOhmException(e.getMessage(), JOhmExceptionMeta.GENERIC_EXCEPTION);
+		    } finally {
+				if (jedis != null && !ex) {
+					returnResource(jedis);
+				}
+			}
+		}
+	}
+
+	private static void replaceList(final RedisPipeline pipelined,
+	    final String key, final String[] elements, final String member,
+	    final Collection<String> setsToLeave,
+	    final Collection<String> setsToJoin) {
+		pipelined.del(key);
+		if (elements.length > 0) {
+			pipelined.rpush(key, elements);
+		}
+		for (String set : setsToLeave) {
+			pipelined.srem(set, member);
+		}
+		for (String set : setsToJoin) {
+			pipelined.sadd(set, member);
+		}
+	}
+
 	// Redis SortedSet Operations
 	public Set<String> zrange(int start, int end) {
 		Boolean ex = false;
@@ -1435,6 +1884,50 @@ public class Nest<T> {
 		}
 	}
 
+	public Set<String> zrangebyscore(double min, double max, int offset,
+	    int count) {
+		Boolean ex = false;
+		if (isSharded) {
+			ShardedJedis jedis = null;
+			try {
+				jedis = getShardedResource();
+				Set<String> zrange = jedis.zrangeByScore(key(), min, max, offset,
+				    count);
+				return zrange;
+			} catch (Exception e) {
+				e.printStackTrace();
+				ex = true;
+				if (jedis != null) {
+					returnBrokenShardedResource(jedis);
+				}
+				throw new JOhmException(e.getMessage(), JOhmExceptionMeta.GENERIC_EXCEPTION);
+		    } finally {
+				if (jedis != null && !ex) {
+					returnShardedResource(jedis);
+				}
+			}
+		} else {
+			Jedis jedis = null;
+			try {
+				jedis = getResource();
+				Set<String> zrange = jedis.zrangeByScore(key(), min, max, offset,
+				    count);
+				return zrange;
+			} catch (Exception e) {
+				e.printStackTrace();
+				ex = true;
+				if (jedis != null) {
+					returnBrokenResource(jedis);
+				}
+				throw new JOhmException(e.getMessage(), JOhmExceptionMeta.GENERIC_EXCEPTION);
+		    } finally {
+				if (jedis != null && !ex) {
+					returnResource(jedis);
+				}
+			}
+		}
+	}
+
 	public Set<String> zrangebyscore(String min, String max) {
 		Boolean ex = false;
 		if (isSharded) {
@@ -1476,14 +1969,16 @@ public class Nest<T> {
 		}
 	}
 
-	public Long zadd(float score, String member) {
-		Boolean ex =false;
+	public Set<String> zrangebyscore(String min, String max, int offset,
+	    int count) {
+		Boolean ex = false;
 		if (isSharded) {
 			ShardedJedis jedis = null;
 			try {
 				jedis = getShardedResource();
-				Long zadd = jedis.zadd(key(), score, member);
-				return zadd;
+				Set<String> zrange = jedis.zrangeByScore(key(), min, max, offset,
+				    count);
+				return zrange;
 			} catch (Exception e) {
 				e.printStackTrace();
 				ex = true;
@@ -1500,8 +1995,9 @@ public class Nest<T> {
 			Jedis jedis = null;
 			try {
 				jedis = getResource();
-				Long zadd = jedis.zadd(key(), score, member);
-				return zadd;
+				Set<String> zrange = jedis.zrangeByScore(key(), min, max, offset,
+				    count);
+				return zrange;
 			} catch (Exception e) {
 				e.printStackTrace();
 				ex = true;
@@ -1517,14 +2013,16 @@ public class Nest<T> {
 		}
 	}
 
-	public Long zadd(double score, String member) {
-		Boolean ex =false;
+	public Set<String> zrevrangebyscore(String max, String min,
+	    int offset, int count) {
+		Boolean ex = false;
 		if (isSharded) {
 			ShardedJedis jedis = null;
 			try {
 				jedis = getShardedResource();
-				Long zadd = jedis.zadd(key(), score, member);
-				return zadd;
+				Set<String> zrange = jedis.zrevrangeByScore(key(), max, min, offset,
+				    count);
+				return zrange;
 			} catch (Exception e) {
 				e.printStackTrace();
 				ex = true;
@@ -1541,8 +2039,9 @@ public class Nest<T> {
 			Jedis jedis = null;
 			try {
 				jedis = getResource();
-				Long zadd = jedis.zadd(key(), score, member);
-				return zadd;
+				Set<String> zrange = jedis.zrevrangeByScore(key(), max, min, offset,
+				    count);
+				return zrange;
 			} catch (Exception e) {
 				e.printStackTrace();
 				ex = true;
@@ -1558,14 +2057,14 @@ public class Nest<T> {
 		}
 	}
 
-	public void zinterstore(final String dstkey, ZParams params) {
-		Boolean ex =false;
+	public List<String> sort(SortingParams params) {
+		Boolean ex = false;
 		if (isSharded) {
 			ShardedJedis jedis = null;
 			try {
 				jedis = getShardedResource();
-				jedis.zinterstore(dstkey, params,
-						(String[]) keys.toArray(new String[0]));
+				List<String> sorted = jedis.sort(key(), params);
+				return sorted;
 			} catch (Exception e) {
 				e.printStackTrace();
 				ex = true;
@@ -1582,8 +2081,8 @@ public class Nest<T> {
 			Jedis jedis = null;
 			try {
 				jedis = getResource();
-				jedis.zinterstore(dstkey, params,
-						(String[]) keys.toArray(new String[0]));
+				List<String> sorted = jedis.sort(key(), params);
+				return sorted;
 			} catch (Exception e) {
 				e.printStackTrace();
 				ex = true;
@@ -1599,14 +2098,14 @@ public class Nest<T> {
 		}
 	}
 
-	public Long zrem(String member) {
-		Boolean ex = false;
+	public Long zadd(float score, String member) {
+		Boolean ex =false;
 		if (isSharded) {
 			ShardedJedis jedis = null;
 			try {
 				jedis = getShardedResource();
-				Long zrem = jedis.zrem(key(), member);
-				return zrem;
+				Long zadd = jedis.zadd(key(), score, member);
+				return zadd;
 			} catch (Exception e) {
 				e.printStackTrace();
 				ex = true;
@@ -1623,8 +2122,8 @@ public class Nest<T> {
 			Jedis jedis = null;
 			try {
 				jedis = getResource();
-				Long zrem = jedis.zrem(key(), member);
-				return zrem;
+				Long zadd = jedis.zadd(key(), score, member);
+				return zadd;
 			} catch (Exception e) {
 				e.printStackTrace();
 				ex = true;
@@ -1640,13 +2139,13 @@ public class Nest<T> {
 		}
 	}
 
-	public Long zcard() {
-		Boolean ex = false;
+	public Long zadd(double score, String member) {
+		Boolean ex =false;
 		if (isSharded) {
 			ShardedJedis jedis = null;
 			try {
 				jedis = getShardedResource();
-				Long zadd = jedis.zcard(key());
+				Long zadd = jedis.zadd(key(), score, member);
 				return zadd;
 			} catch (Exception e) {
 				e.printStackTrace();
@@ -1664,7 +2163,7 @@ public class Nest<T> {
 			Jedis jedis = null;
 			try {
 				jedis = getResource();
-				Long zadd = jedis.zcard(key());
+				Long zadd = jedis.zadd(key(), score, member);
 				return zadd;
 			} catch (Exception e) {
 				e.printStackTrace();
@@ -1681,6 +2180,542 @@ public class Nest<T> {
 		}
 	}
 
+	public void zinterstore(final String dstkey, ZParams params) {
+		Boolean ex =false;
+		if (isSharded) {
+			ShardedJedis jedis = null;
+			try {
+				jedis = getShardedResource();
+				jedis.zinterstore(dstkey, params,
+						(String[]) keys.toArray(new String[0]));
+			} catch (Exception e) {
+				e.printStackTrace();
+				ex = true;
+				if (jedis != null) {
+					returnBrokenShardedResource(jedis);
+				}
+				throw new JOhmException(e.getMessage(), JOhmExceptionMeta.GENERIC_EXCEPTION);
+		    } finally {
+				if (jedis != null && !ex) {
+					returnShardedResource(jedis);
+				}
+			}
+		} else {
+			Jedis jedis = null;
+			try {
+				jedis = getResource();
+				jedis.zinterstore(dstkey, params,
+						(String[]) keys.toArray(new String[0]));
+			} catch (Exception e) {
+				e.printStackTrace();
+				ex = true;
+				if (jedis != null) {
+					returnBrokenResource(jedis);
+				}
+				throw new JOhmException(e.getMessage(), JOhmExceptionMeta.GENERIC_EXCEPTION);
+		    } finally {
+				if (jedis != null && !ex) {
+					returnResource(jedis);
+				}
+			}
+		}
+	}
+
+	public void zunionstore(final String dstkey, ZParams params) {
+		Boolean ex =false;
+		if (isSharded) {
+			ShardedJedis jedis = null;
+			try {
+				jedis = getShardedResource();
+				jedis.getShard(dstkey).zunionstore(dstkey, params,
+						(String[]) keys.toArray(new String[0]));
+			} catch (Exception e) {
+				e.printStackTrace();
+				ex = true;
+				if (jedis != null) {
+					returnBrokenShardedResource(jedis);
+				}
+				throw new JOhmException(e.getMessage(), JOhmExceptionMeta.GENERIC_EXCEPTION);
+		    } finally {
+				if (jedis != null && !ex) {
+					returnShardedResource(jedis);
+				}
+			}
+		} else {
+			Jedis jedis = null;
+			try {
+				jedis = getResource();
+				jedis.zunionstore(dstkey, params,
+						(String[]) keys.toArray(new String[0]));
+			} catch (Exception e) {
+				e.printStackTrace();
+				ex = true;
+				if (jedis != null) {
+					returnBrokenResource(jedis);
+				}
+				throw new JOhmException(e.getMessage(), JOhmExceptionMeta.GENERIC_EXCEPTION);
+		    } finally {
+				if (jedis != null && !ex) {
+					returnResource(jedis);
+				}
+			}
+		}
+	}
+
+	public void sdiffstore(final String dstkey) {
+		Boolean ex =false;
+		if (isSharded) {
+			ShardedJedis jedis = null;
+			try {
+				jedis = getShardedResource();
+				jedis.getShard(dstkey).sdiffstore(dstkey,
+						(String[]) keys.toArray(new String[0]));
+			} catch (Exception e) {
+				e.printStackTrace();
+				ex = true;
+				if (jedis != null) {
+					returnBrokenShardedResource(jedis);
+				}
+				throw new JOhmException(e.getMessage(), JOhmExceptionMeta.GENERIC_EXCEPTION);
+		    } finally {
+				if (jedis != null && !ex) {
+					returnShardedResource(jedis);
+				}
+			}
+		} else {
+			Jedis jedis = null;
+			try {
+				jedis = getResource();
+				jedis.sdiffstore(dstkey,
+						(String[]) keys.toArray(new String[0]));
+			} catch (Exception e) {
+				e.printStackTrace();
+				ex = true;
+				if (jedis != null) {
+					returnBrokenResource(jedis);
+				}
+				throw new JOhmException(e.getMessage(), JOhmExceptionMeta.GENERIC_EXCEPTION);
+		    } finally {
+				if (jedis != null && !ex) {
+					returnResource(jedis);
+				}
+			}
+		}
+	}
+
+	public Long zrem(String... members) {
+		Boolean ex = false;
+		if (isSharded) {
+			ShardedJedis jedis = null;
+			try {
+				jedis = getShardedResource();
+				Long zrem = jedis.zrem(key(), members);
+				return zrem;
+			} catch (Exception e) {
+				e.printStackTrace();
+				ex = true;
+				if (jedis != null) {
+					returnBrokenShardedResource(jedis);
+				}
+				throw new JOhmException(e.getMessage(), JOhmExceptionMeta.GENERIC_EXCEPTION);
+		    } finally {
+				if (jedis != null && !ex) {
+					returnShardedResource(jedis);
+				}
+			}
+		} else {
+			Jedis jedis = null;
+			try {
+				jedis = getResource();
+				Long zrem = jedis.zrem(key(), members);
+				return zrem;
+			} catch (Exception e) {
+				e.printStackTrace();
+				ex = true;
+				if (jedis != null) {
+					returnBrokenResource(jedis);
+				}
+				throw new JOhmException(e.getMessage(), JOhmExceptionMeta.GENERIC_EXCEPTION);
+		    } finally {
+				if (jedis != null && !ex) {
+					returnResource(jedis);
+				}
+			}
+		}
+	}
+
+	public Long zremrangebyscore(String min, String max) {
+		Boolean ex = false;
+		if (isSharded) {
+			ShardedJedis jedis = null;
+			try {
+				jedis = getShardedResource();
+				Long removed = jedis.zremrangeByScore(key(), min, max);
+				return removed;
+			} catch (Exception e) {
+				e.printStackTrace();
+				ex = true;
+				if (jedis != null) {
+					returnBrokenShardedResource(jedis);
+				}
+				throw new JOhmException(e.getMessage(), JOhmExceptionMeta.GENERIC_EXCEPTION);
+		    } finally {
+				if (jedis != null && !ex) {
+					returnShardedResource(jedis);
+				}
+			}
+		} else {
+			Jedis jedis = null;
+			try {
+				jedis = getResource();
+				Long removed = jedis.zremrangeByScore(key(), min, max);
+				return removed;
+			} catch (Exception e) {
+				e.printStackTrace();
+				ex = true;
+				if (jedis != null) {
+					returnBrokenResource(jedis);
+				}
+				throw new JOhmException(e.getMessage(), JOhmExceptionMeta.GENERIC_EXCEPTION);
+		    } finally {
+				if (jedis != null && !ex) {
+					returnResource(jedis);
+				}
+			}
+		}
+	}
+
+	public Long zcard() {
+		Boolean ex = false;
+		if (isSharded) {
+			ShardedJedis jedis = null;
+			try {
+				jedis = getShardedResource();
+				Long zadd = jedis.zcard(key());
+				return zadd;
+			} catch (Exception e) {
+				e.printStackTrace();
+				ex = true;
+				if (jedis != null) {
+					returnBrokenShardedResource(jedis);
+				}
+				throw new JOhmException(e.getMessage(), JOhmExceptionMeta.GENERIC_EXCEPTION);
+		    } finally {
+				if (jedis != null && !ex) {
+					returnShardedResource(jedis);
+				}
+			}
+		} else {
+			Jedis jedis = null;
+			try {
+				jedis = getResource();
+				Long zadd = jedis.zcard(key());
+				return zadd;
+			} catch (Exception e) {
+				e.printStackTrace();
+				ex = true;
+				if (jedis != null) {
+					returnBrokenResource(jedis);
+				}
+				throw new JOhmException(e.getMessage(), JOhmExceptionMeta.GENERIC_EXCEPTION);
+		    } finally {
+				if (jedis != null && !ex) {
+					returnResource(jedis);
+				}
+			}
+		}
+	}
+
+	public String scriptLoad(String script) {
+		Boolean ex = false;
+		if (isSharded) {
+			ShardedJedis jedis = null;
+			try {
+				jedis = getShardedResource();
+				String sha = jedis.getShard(key()).scriptLoad(script);
+				return sha;
+			} catch (Exception e) {
+				e.printStackTrace();
+				ex = true;
+				if (jedis != null) {
+					returnBrokenShardedResource(jedis);
+				}
+				throw new JOhmException(e.getMessage(), JOhmExceptionMeta.GENERIC_EXCEPTION);
+		    } finally {
+				if (jedis != null && !ex) {
+					returnShardedResource(jedis);
+				}
+			}
+		} else {
+			Jedis jedis = null;
+			try {
+				jedis = getResource();
+				String sha = jedis.scriptLoad(script);
+				return sha;
+			} catch (Exception e) {
+				e.printStackTrace();
+				ex = true;
+				if (jedis != null) {
+					returnBrokenResource(jedis);
+				}
+				throw new JOhmException(e.getMessage(), JOhmExceptionMeta.GENERIC_EXCEPTION);
+		    } finally {
+				if (jedis != null && !ex) {
+					returnResource(jedis);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Run a loaded script. On a sharded pool the script runs on the shard of
+	 * this key, so every key it touches has to live there.
+	 */
+	public Object evalsha(String sha, List<String> keys, List<String> args) {
+		Boolean ex = false;
+		if (isSharded) {
+			ShardedJedis jedis = null;
+			try {
+				jedis = getShardedResource();
+				Object result = jedis.getShard(key()).evalsha(sha, keys, args);
+				return result;
+			} catch (Exception e) {
+				e.printStackTrace();
+				ex = true;
+				if (jedis != null) {
+					returnBrokenShardedResource(jedis);
+				}
+				throw new JOhmException(e.getMessage(), JOhmExceptionMeta.GENERIC_EXCEPTION);
+		    } finally {
+				if (jedis != null && !ex) {
+					returnShardedResource(jedis);
+				}
+			}
+		} else {
+			Jedis jedis = null;
+			try {
+				jedis = getResource();
+				Object result = jedis.evalsha(sha, keys, args);
+				return result;
+			} catch (Exception e) {
+				e.printStackTrace();
+				ex = true;
+				if (jedis != null) {
+					returnBrokenResource(jedis);
+				}
+				throw new JOhmException(e.getMessage(), JOhmExceptionMeta.GENERIC_EXCEPTION);
+		    } finally {
+				if (jedis != null && !ex) {
+					returnResource(jedis);
+				}
+			}
+		}
+	}
+
+	public Long publish(String message) {
+		Boolean ex = false;
+		String channel = key();
+		if (isSharded) {
+			ShardedJedis jedis = null;
+			try {
+				jedis = getShardedResource();
+				Long receivers = jedis.getShard(channel).publish(channel, message);
+				return receivers;
+			} catch (Exception e) {
+				e.printStackTrace();
+				ex = true;
+				if (jedis != null) {
+					returnBrokenShardedResource(jedis);
+				}
+				throw new JOhmException(e.getMessage(), JOhmExceptionMeta.GENERIC_EXCEPTION);
+		    } finally {
+				if (jedis != null && !ex) {
+					returnShardedResource(jedis);
+				}
+			}
+		} else {
+			Jedis jedis = null;
+			try {
+				jedis = getResource();
+				Long receivers = jedis.publish(channel, message);
+				return receivers;
+			} catch (Exception e) {
+				e.printStackTrace();
+				ex = true;
+				if (jedis != null) {
+					returnBrokenResource(jedis);
+				}
+				throw new JOhmException(e.getMessage(), JOhmExceptionMeta.GENERIC_EXCEPTION);
+		    } finally {
+				if (jedis != null && !ex) {
+					returnResource(jedis);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Subscribe to the channel named by this key and block until the
+	 * subscription ends. On a sharded pool the subscription goes to the shard
+	 * that publish() picks for the same channel. The connection is held for the
+	 * whole subscription.
+	 * 
+	 * @param pubSub
+	 */
+	public void subscribe(JedisPubSub pubSub) {
+		Boolean ex = false;
+		String channel = key();
+		if (isSharded) {
+			ShardedJedis jedis = null;
+			try {
+				jedis = getShardedResource();
+				jedis.getShard(channel).subscribe(pubSub, channel);
+			} catch (Exception e) {
+				e.printStackTrace();
+				ex = true;
+				if (jedis != null) {
+					returnBrokenShardedResource(jedis);
+				}
+				throw new JOhmException(e.getMessage(), JOhmExceptionMeta.GENERIC_EXCEPTION);
+		    } finally {
+				if (jedis != null && !ex) {
+					returnShardedResource(jedis);
+				}
+			}
+		} else {
+			Jedis jedis = null;
+			try {
+				jedis = getResource();
+				jedis.subscribe(pubSub, channel);
+			} catch (Exception e) {
+				e.printStackTrace();
+				ex = true;
+				if (jedis != null) {
+					returnBrokenResource(jedis);
+				}
+				throw new JOhmException(e.getMessage(), JOhmExceptionMeta.GENERIC_EXCEPTION);
+		    } finally {
+				if (jedis != null && !ex) {
+					returnResource(jedis);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Delete every key matching the given pattern. The keyspace of every
+	 * shard is walked with SCAN, count keys at a time, and each page found is
+	 * deleted with one DEL. With a positive keysPerSecond, pauses are taken
+	 * between pages to stay under that rate.
+	 * 
+	 * @return the number of keys deleted
+	 */
+	public long scanAndDelete(String pattern, int count, long keysPerSecond) {
+		return scanAndDelete(pattern, count, keysPerSecond, null);
+	}
+
+	/**
+	 * Picks the keys scanAndDelete() deletes among those matching its pattern.
+	 */
+	public static interface KeyFilter {
+		boolean accept(String key);
+	}
+
+	public long scanAndDelete(String pattern, int count, long keysPerSecond,
+	    KeyFilter filter) {
+		ScanParams params = new ScanParams().match(pattern).count(count);
+		Throttle throttle = new Throttle(keysPerSecond);
+		Boolean ex = false;
+		if (isSharded) {
+			ShardedJedis jedis = null;
+			try {
+				jedis = getShardedResource();
+				long deleted = 0;
+				for (Jedis shard : jedis.getAllShards()) {
+					deleted += scanAndDelete(shard, params, throttle, filter);
+				}
+				return deleted;
+			} catch (Exception e) {
+				e.printStackTrace();
+				ex = true;
+				if (jedis != null) {
+					returnBrokenShardedResource(jedis);
+				}
+				throw new JOhmException(e.getMessage(), JOhmExceptionMeta.GENERIC_EXCEPTION);
+		    } finally {
+				if (jedis != null && !ex) {
+					returnShardedResource(jedis);
+				}
+			}
+		} else {
+			Jedis jedis = null;
+			try {
+				jedis = getResource();
+				return scanAndDelete(jedis, params, throttle, filter);
+			} catch (Exception e) {
+				e.printStackTrace();
+				ex = true;
+				if (jedis != null) {
+					returnBrokenResource(jedis);
+				}
+				throw new JOhmException(e.getMessage(), JOhmExceptionMeta.GENERIC_EXCEPTION);
+		    } finally {
+				if (jedis != null && !ex) {
+					returnResource(jedis);
+				}
+			}
+		}
+	}
+
+	private static long scanAndDelete(Jedis jedis, ScanParams params,
+	    Throttle throttle, KeyFilter filter) throws InterruptedException {
+		long deleted = 0;
+		String cursor = ScanParams.SCAN_POINTER_START;
+		do {
+			ScanResult<String> page = jedis.scan(cursor, params);
+			List<String> keys = page.getResult();
+			if (filter != null) {
+				List<String> accepted = new ArrayList<String>(keys.size());
+				for (String key : keys) {
+					if (filter.accept(key)) {
+						accepted.add(key);
+					}
+				}
+				keys = accepted;
+			}
+			if (!keys.isEmpty()) {
+				deleted += jedis.del(keys.toArray(new String[keys.size()]));
+				throttle.acquired(keys.size());
+			}
+			cursor = page.getStringCursor();
+		} while (!ScanParams.SCAN_POINTER_START.equals(cursor));
+		return deleted;
+	}
+
+	/**
+	 * Paces work to a number of units per second.
+	 */
+	private static final class Throttle {
+		private final long perSecond;
+		private final long start = System.currentTimeMillis();
+		private long done;
+
+		Throttle(long perSecond) {
+			this.perSecond = perSecond;
+		}
+
+		void acquired(int units) throws InterruptedException {
+			done += units;
+			if (perSecond > 0) {
+				long due = done * 1000 / perSecond
+				    - (System.currentTimeMillis() - start);
+				if (due > 0) {
+					Thread.sleep(due);
+				}
+			}
+		}
+	}
+
 	public Pipeline pipelined(Jedis jedis) {
 		return jedis.pipelined();
 	}
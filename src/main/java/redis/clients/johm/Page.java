@@ -0,0 +1,77 @@
+package redis.clients.johm;
+
+/**
+ * Page asks JOhm.find() for a slice of the matches: limit of them, starting
+ * at offset. Ordered by a Comparable field, the matches are intersected with
+ * the sorted set indexing it and the page is read with ZRANGEBYSCORE or
+ * ZREVRANGEBYSCORE ... LIMIT; matches with no value for the field are not in
+ * that sorted set and never make it into a page. Otherwise the page is read
+ * with SORT ... LIMIT, in the order of the ids. Either way only the ids of the
+ * page leave Redis and only its models are loaded.
+ * 
+ * SORT compares ids as doubles, which stop telling them apart above 2^53. When
+ * the Class type draws its ids from an IdGenerator other than
+ * BlockIdGenerator, such as TimeBasedIdGenerator, the ids of all the matches
+ * are read instead and the page is cut from them in numeric order.
+ */
+public final class Page {
+	public enum Order {
+		ASC, DESC
+	}
+
+	private final int offset;
+	private final int limit;
+	private final String orderBy;
+	private final Order order;
+
+	private Page(int offset, int limit, String orderBy, Order order) {
+		this.offset = offset;
+		this.limit = limit;
+		this.orderBy = orderBy;
+		this.order = order;
+	}
+
+	public static Page of(int offset, int limit) {
+		if (offset < 0 || limit <= 0) {
+			throw new JOhmException(
+			    "Offset cannot be negative and limit must be positive",
+			    JOhmExceptionMeta.ILLEGAL_ARGUMENT_EXCEPTION);
+		}
+		return new Page(offset, limit, null, Order.ASC);
+	}
+
+	public static Page first(int limit) {
+		return of(0, limit);
+	}
+
+	/**
+	 * The same page of the matches sorted by the given Comparable field.
+	 * Matches without a value for the field are left out.
+	 */
+	public Page orderBy(String attributeName, Order order) {
+		if (JOhmUtils.isNullOrEmpty(attributeName) || order == null) {
+			throw new JOhmException("Order needs a field and a direction",
+			    JOhmExceptionMeta.ILLEGAL_ARGUMENT_EXCEPTION);
+		}
+		return new Page(offset, limit, attributeName, order);
+	}
+
+	public int getOffset() {
+		return offset;
+	}
+
+	public int getLimit() {
+		return limit;
+	}
+
+	/**
+	 * The Comparable field the matches are sorted by, null for id order.
+	 */
+	public String getOrderBy() {
+		return orderBy;
+	}
+
+	public Order getOrder() {
+		return order;
+	}
+}
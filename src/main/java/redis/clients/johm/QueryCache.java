@@ -0,0 +1,207 @@
+package redis.clients.johm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import redis.clients.jedis.RedisPipeline;
+
+/**
+ * QueryCache is an optional cache of the ids matched by
+ * JOhm.find(Class, boolean, NVField...), keyed by the Class type and the
+ * conditions of the search in a normalized order. Results are kept in
+ * process and, when sharedTimeToLive is positive, also in Redis under
+ * Class:_query:..., with that TTL in seconds, for other JVMs to reuse.
+ *
+ * Every entry remembers the generations of the fields it searched, and of
+ * the Class type as a whole, kept by Redis in the hash Class:_gen. Saves
+ * bump the generations of the fields they change, collection and array
+ * mutations the one of their field, and new or deleted models the one of
+ * the Class type. A cached search costs a single HMGET of its generations
+ * and is evaluated again once one of them has moved.
+ *
+ * Generations are only bumped by JVMs with a QueryCache installed, so every
+ * JVM writing the cached Class types needs one. Install it with
+ * JOhm.setQueryCache().
+ */
+public class QueryCache {
+	static final String GENERATIONS = "_gen";
+	static final String CLASS_GENERATION = "*";
+	private static final String SHARED = "_query";
+
+	private final Cache<String, Entry> results;
+	private final int sharedTimeToLive;
+
+	public QueryCache(long maximumSize) {
+		this(maximumSize, 0);
+	}
+
+	public QueryCache(long maximumSize, int sharedTimeToLive) {
+		if (maximumSize <= 0 || sharedTimeToLive < 0) {
+			throw new JOhmException(
+			    "Maximum size must be positive and the shared TTL cannot be negative",
+			    JOhmExceptionMeta.ILLEGAL_ARGUMENT_EXCEPTION);
+		}
+		results = CacheBuilder.newBuilder().maximumSize(maximumSize)
+		    .recordStats().build();
+		this.sharedTimeToLive = sharedTimeToLive;
+	}
+
+	/**
+	 * The normalized form of a search, the conditions sorted.
+	 */
+	static String key(final Class<?> clazz, final NVField... attributes) {
+		List<String> conditions = new ArrayList<String>(attributes.length);
+		for (NVField attribute : attributes) {
+			conditions.add(attribute.getAttributeName() + "="
+			    + attribute.getReferenceAttributeName() + "="
+			    + attribute.getConditionUsed() + "="
+			    + attribute.getAttributeValue() + "="
+			    + attribute.getReferenceAttributeValue());
+		}
+		Collections.sort(conditions);
+		StringBuilder key = new StringBuilder(clazz.getSimpleName());
+		for (String condition : conditions) {
+			key.append('&').append(condition);
+		}
+		return key.toString();
+	}
+
+	/**
+	 * Read the current generations of the given fields, the one of the Class
+	 * type first.
+	 */
+	static List<String> generations(final Class<?> clazz,
+	    final Collection<String> fields) {
+		List<String> names = new ArrayList<String>(fields.size() + 1);
+		names.add(CLASS_GENERATION);
+		names.addAll(fields);
+		Nest nest = new Nest(clazz);
+		JOhm.setPool(nest);
+		return nest.cat(GENERATIONS).hmget(names.toArray(new String[names.size()]));
+	}
+
+	/**
+	 * Bump the generations of the given fields, or of the whole Class type
+	 * when fields is empty.
+	 */
+	static JOhm.PipelinedWrite bump(final Class<?> clazz,
+	    final Collection<String> fields) {
+		final String key = new Nest(clazz).cat(GENERATIONS).key();
+		final Collection<String> bumped = fields.isEmpty() ? Collections
+		    .singleton(CLASS_GENERATION) : fields;
+		return new JOhm.PipelinedWrite() {
+			void writeTo(RedisPipeline pipelined) {
+				for (String field : bumped) {
+					pipelined.hincrBy(key, field, 1);
+				}
+			}
+		};
+	}
+
+	/**
+	 * The cached ids of a search, if its generations have not moved since, as
+	 * a fresh set.
+	 */
+	Set<String> get(final Class<?> clazz, final String key,
+	    final List<String> generations) {
+		Entry entry = results.getIfPresent(key);
+		if (entry == null && sharedTimeToLive > 0) {
+			Nest nest = new Nest(clazz);
+			JOhm.setPool(nest);
+			entry = Entry.parse(nest.cat(SHARED).cat(key).get());
+			if (entry != null && entry.generations.equals(generations)) {
+				results.put(key, entry);
+			}
+		}
+		if (entry == null || !entry.generations.equals(generations)) {
+			return null;
+		}
+		return new HashSet<String>(entry.ids);
+	}
+
+	void put(final Class<?> clazz, final String key,
+	    final List<String> generations, final Set<String> ids) {
+		final Entry entry = new Entry(generations, new ArrayList<String>(ids));
+		results.put(key, entry);
+		if (sharedTimeToLive > 0) {
+			final String sharedKey = new Nest(clazz).cat(SHARED).cat(key).key();
+			JOhm.writeUsingPipeline(Collections.singletonList(new JOhm.PipelinedWrite() {
+				void writeTo(RedisPipeline pipelined) {
+					pipelined.setex(sharedKey, sharedTimeToLive, entry.format());
+				}
+			}));
+		}
+	}
+
+	public void invalidateAll() {
+		results.invalidateAll();
+	}
+
+	public long size() {
+		return results.size();
+	}
+
+	public CacheStats stats() {
+		return results.stats();
+	}
+
+	/**
+	 * The ids of a search and the generations they were read at.
+	 */
+	private static final class Entry {
+		final List<String> generations;
+		final List<String> ids;
+
+		Entry(List<String> generations, List<String> ids) {
+			this.generations = generations;
+			this.ids = ids;
+		}
+
+		/**
+		 * generations|ids, both comma separated, a missing generation empty.
+		 */
+		String format() {
+			StringBuilder formatted = new StringBuilder();
+			for (int i = 0; i < generations.size(); i++) {
+				if (i > 0) {
+					formatted.append(',');
+				}
+				if (generations.get(i) != null) {
+					formatted.append(generations.get(i));
+				}
+			}
+			formatted.append('|');
+			for (int i = 0; i < ids.size(); i++) {
+				if (i > 0) {
+					formatted.append(',');
+				}
+				formatted.append(ids.get(i));
+			}
+			return formatted.toString();
+		}
+
+		static Entry parse(String formatted) {
+			if (formatted == null) {
+				return null;
+			}
+			int separator = formatted.indexOf('|');
+			List<String> generations = new ArrayList<String>();
+			for (String generation : formatted.substring(0, separator).split(",",
+			    -1)) {
+				generations.add(generation.length() == 0 ? null : generation);
+			}
+			String ids = formatted.substring(separator + 1);
+			return new Entry(generations, ids.length() == 0 ? new ArrayList<String>()
+			    : Arrays.asList(ids.split(",")));
+		}
+	}
+}
@@ -5,5 +5,9 @@ import java.lang.annotation.RetentionPolicy;
 
 @Retention(RetentionPolicy.RUNTIME)
 public @interface Reference {
-
+    /**
+     * LAZY References must be declared as a LazyReference of the referenced
+     * Model and are only loaded on first access.
+     */
+    FetchType fetch() default FetchType.EAGER;
 }
@@ -0,0 +1,65 @@
+package redis.clients.johm;
+
+import java.util.List;
+
+/**
+ * ScriptedSave applies the changes of a save in a single EVALSHA, so that the
+ * index moves and the hash write of a model happen atomically and in one round
+ * trip. The script SHA is loaded once and loaded again whenever Redis answers
+ * NOSCRIPT, for instance after a restart or a SCRIPT FLUSH.
+ *
+ * KEYS holds the hash key followed by the sets to leave, the sets to join,
+ * the sorted sets to leave, the sorted sets to join and the IndexManifest key.
+ * ARGV holds the member, the seven counts, the scores of the sorted sets to
+ * join, the field/value pairs to set, the fields to delete and the manifest
+ * entries.
+ */
+final class ScriptedSave {
+	static final String SOURCE = "local member = ARGV[1]\n"
+	    + "local srems, sadds, zrems, zadds = tonumber(ARGV[2]), tonumber(ARGV[3]), tonumber(ARGV[4]), tonumber(ARGV[5])\n"
+	    + "local hsets, hdels, entries = tonumber(ARGV[6]), tonumber(ARGV[7]), tonumber(ARGV[8])\n"
+	    + "local k, a = 2, 9\n"
+	    + "for i = 1, srems do redis.call('SREM', KEYS[k], member) k = k + 1 end\n"
+	    + "for i = 1, sadds do redis.call('SADD', KEYS[k], member) k = k + 1 end\n"
+	    + "for i = 1, zrems do redis.call('ZREM', KEYS[k], member) k = k + 1 end\n"
+	    + "for i = 1, zadds do redis.call('ZADD', KEYS[k], ARGV[a], member) k = k + 1 a = a + 1 end\n"
+	    + "if hsets > 0 then\n"
+	    + "  redis.call('HMSET', KEYS[1], unpack(ARGV, a, a + 2 * hsets - 1))\n"
+	    + "  a = a + 2 * hsets\n"
+	    + "end\n"
+	    + "if hdels > 0 then\n"
+	    + "  redis.call('HDEL', KEYS[1], unpack(ARGV, a, a + hdels - 1))\n"
+	    + "  a = a + hdels\n"
+	    + "end\n"
+	    + "redis.call('DEL', KEYS[k])\n"
+	    + "if entries > 0 then redis.call('SADD', KEYS[k], unpack(ARGV, a, a + entries - 1)) end\n"
+	    + "return 1\n";
+
+	private static volatile String sha;
+
+	private ScriptedSave() {
+	}
+
+	static void apply(final List<String> keys, final List<String> args) {
+		Nest nest = new Nest(keys.get(0));
+		JOhm.setPool(nest);
+		String loadedSha = sha;
+		if (loadedSha == null) {
+			loadedSha = load(nest);
+		}
+		try {
+			nest.evalsha(loadedSha, keys, args);
+		} catch (JOhmException e) {
+			if (e.getMessage() == null || !e.getMessage().startsWith("NOSCRIPT")) {
+				throw e;
+			}
+			nest.evalsha(load(nest), keys, args);
+		}
+	}
+
+	private static String load(final Nest nest) {
+		String loadedSha = nest.scriptLoad(SOURCE);
+		sha = loadedSha;
+		return loadedSha;
+	}
+}
@@ -0,0 +1,84 @@
+package redis.clients.johm;
+
+/**
+ * TemporaryKeyReaper deletes the temporary keys of find() that have outlived
+ * their TTL, which only happens when a JVM died between writing one and
+ * setting its TTL. Every interval it walks the temporary keys with SCAN, on
+ * every shard when sharded, and deletes those created more than twice their
+ * TTL ago, judging by the time in their name; so it never takes the keys of
+ * a search still running, even before their TTL is set.
+ *
+ * reap() can also be called directly instead of starting the reaper thread.
+ */
+public class TemporaryKeyReaper implements Runnable {
+	private final long intervalMillis;
+	private final int batchSize;
+	private volatile boolean running;
+	private Thread thread;
+
+	public TemporaryKeyReaper() {
+		this(60000, 1000);
+	}
+
+	public TemporaryKeyReaper(long intervalMillis, int batchSize) {
+		if (intervalMillis <= 0 || batchSize <= 0) {
+			throw new JOhmException("Interval and batch size must be positive",
+			    JOhmExceptionMeta.ILLEGAL_ARGUMENT_EXCEPTION);
+		}
+		this.intervalMillis = intervalMillis;
+		this.batchSize = batchSize;
+	}
+
+	public synchronized void start() {
+		if (running) {
+			return;
+		}
+		running = true;
+		thread = new Thread(this, "johm-temporary-key-reaper");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	public synchronized void stop() {
+		running = false;
+		if (thread != null) {
+			thread.interrupt();
+			thread = null;
+		}
+	}
+
+	public void run() {
+		while (running) {
+			try {
+				reap();
+			} catch (JOhmException e) {
+				// Nest already reported it; try again next round
+			}
+			try {
+				Thread.sleep(intervalMillis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Delete the temporary keys left behind.
+	 *
+	 * @return the number of keys deleted
+	 */
+	public long reap() {
+		final long createdBefore = System.currentTimeMillis() - 2000L
+		    * TemporaryKeys.TTL_SECONDS;
+		Nest nest = new Nest();
+		JOhm.setPool(nest);
+		return nest.scanAndDelete(TemporaryKeys.pattern(), batchSize, 0,
+		    new Nest.KeyFilter() {
+			    public boolean accept(String key) {
+				    long createdAt = TemporaryKeys.createdAt(key);
+				    return createdAt >= 0 && createdAt < createdBefore;
+			    }
+		    });
+	}
+}
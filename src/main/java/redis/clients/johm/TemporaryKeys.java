@@ -0,0 +1,74 @@
+package redis.clients.johm;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * TemporaryKeys names the keys find() keeps its intermediate results in. They
+ * live under Class:_tmp, after the hashTag of the search if it has one so
+ * that they land on the same shard as the index keys, and end with the time
+ * they were created at and a suffix unique to the invocation, so that
+ * concurrent searches never share one. Each is given a TTL of TTL_SECONDS as
+ * soon as it is written; a TemporaryKeyReaper removes those left without one
+ * by a JVM that died in between.
+ */
+final class TemporaryKeys {
+	static final String NAMESPACE = "_tmp";
+	static final int TTL_SECONDS = 60;
+	private static final String JVM = UUID.randomUUID().toString();
+	private static final AtomicLong sequence = new AtomicLong();
+
+	private TemporaryKeys() {
+	}
+
+	/**
+	 * A fresh key for the result of the given operation on the given keys.
+	 */
+	static String name(final Class<?> clazz, final String operation,
+	    final List<String> keys) {
+		Nest nest = new Nest(clazz);
+		nest.cat(NAMESPACE);
+		for (String key : keys) {
+			String hashTag = IndexManifest.hashTagOf(key);
+			if (hashTag != null) {
+				nest.cat(hashTag);
+				break;
+			}
+		}
+		return nest.cat(operation).cat(System.currentTimeMillis())
+		    .cat(JVM + "-" + sequence.incrementAndGet()).key();
+	}
+
+	/**
+	 * Give a key just written its TTL.
+	 */
+	static void expire(final String key) {
+		Nest nest = new Nest(key);
+		JOhm.setPool(nest);
+		nest.expire(TTL_SECONDS);
+	}
+
+	/**
+	 * The pattern matching every temporary key.
+	 */
+	static String pattern() {
+		return "*:" + NAMESPACE + ":*";
+	}
+
+	/**
+	 * When the given temporary key was created, or -1 if it is not one.
+	 */
+	static long createdAt(final String key) {
+		int unique = key.lastIndexOf(':');
+		int created = unique < 0 ? -1 : key.lastIndexOf(':', unique - 1);
+		if (created < 0) {
+			return -1;
+		}
+		try {
+			return Long.parseLong(key.substring(created + 1, unique));
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+}
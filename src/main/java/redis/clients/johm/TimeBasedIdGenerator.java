@@ -0,0 +1,50 @@
+package redis.clients.johm;
+
+/**
+ * TimeBasedIdGenerator builds 64-bit ids on the client without talking to
+ * Redis: 41 bits of milliseconds since 2015-01-01 UTC, 10 bits of worker id and
+ * 12 bits of sequence within the millisecond. Every JVM writing to the same
+ * Redis needs its own worker id. Ids roughly follow creation time.
+ * 
+ * If the clock goes backwards, ids keep being drawn from the last millisecond
+ * seen until the clock catches up, so they never repeat within a worker.
+ */
+public class TimeBasedIdGenerator implements IdGenerator {
+	static final long EPOCH = 1420070400000L;
+	static final int WORKER_BITS = 10;
+	static final int SEQUENCE_BITS = 12;
+	public static final long MAX_WORKER_ID = (1L << WORKER_BITS) - 1;
+	private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+	private final long workerId;
+	private long lastTimestamp = -1;
+	private long sequence = 0;
+
+	public TimeBasedIdGenerator(long workerId) {
+		if (workerId < 0 || workerId > MAX_WORKER_ID) {
+			throw new JOhmException("Worker id must be between 0 and "
+			    + MAX_WORKER_ID, JOhmExceptionMeta.ILLEGAL_ARGUMENT_EXCEPTION);
+		}
+		this.workerId = workerId;
+	}
+
+	public synchronized long nextId(Class<?> clazz) {
+		long timestamp = Math.max(currentTimeMillis(), lastTimestamp);
+		if (timestamp == lastTimestamp) {
+			sequence = (sequence + 1) & SEQUENCE_MASK;
+			if (sequence == 0) {
+				// Sequence exhausted for this millisecond, borrow the next one
+				timestamp = lastTimestamp + 1;
+			}
+		} else {
+			sequence = 0;
+		}
+		lastTimestamp = timestamp;
+		return ((timestamp - EPOCH) << (WORKER_BITS + SEQUENCE_BITS))
+		    | (workerId << SEQUENCE_BITS) | sequence;
+	}
+
+	long currentTimeMillis() {
+		return System.currentTimeMillis();
+	}
+}
@@ -0,0 +1,363 @@
+package redis.clients.johm;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * WriteBehindBuffer queues the saves of a Class type and writes them from a
+ * background thread. Install it with JOhm.setWriteBehind(): save() then only
+ * records the model and returns. Saves of the same Class type and id that are
+ * still pending are coalesced, and the model is written as it is when its
+ * batch is flushed. Batches go through JOhm.saveAll(), one pipeline each, and
+ * are flushed when batchSize models are pending or every flushInterval,
+ * whichever comes first.
+ *
+ * save() reserves the id of a new model before queueing it, so that it
+ * returns with its id and is coalesced like any other. delete() and
+ * deleteAll() discard the pending saves of what they delete and wait for a
+ * batch that is being written with one of them, so that a deleted model is
+ * not written back. A failed batch is reported, counted and dropped.
+ */
+public class WriteBehindBuffer {
+	/**
+	 * What save() does when the buffer already holds capacity models.
+	 */
+	public static enum Backpressure {
+		/** Wait for the flusher to make room. */
+		BLOCK,
+		/** Drop the save and count it. */
+		DROP,
+		/** Write the model right away in the calling thread. */
+		CALLER_RUNS
+	}
+
+	private final int capacity;
+	private final int batchSize;
+	private final long flushIntervalMillis;
+	private final Backpressure backpressure;
+
+	private final Object lock = new Object();
+	// Pending models by Class:id, or by identity for models without an id
+	private final Map<Object, Object> pending = new LinkedHashMap<Object, Object>();
+	// Keys of the batch being written
+	private final Set<Object> inFlight = new HashSet<Object>();
+	private boolean flushing;
+	private boolean running = true;
+	private final Thread flusher;
+
+	private final AtomicLong enqueued = new AtomicLong();
+	private final AtomicLong coalesced = new AtomicLong();
+	private final AtomicLong flushed = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+
+	public WriteBehindBuffer(int capacity, int batchSize, long flushInterval,
+	    TimeUnit unit, Backpressure backpressure) {
+		if (capacity <= 0 || batchSize <= 0 || flushInterval <= 0
+		    || backpressure == null) {
+			throw new JOhmException(
+			    "Capacity, batch size and flush interval must be positive",
+			    JOhmExceptionMeta.ILLEGAL_ARGUMENT_EXCEPTION);
+		}
+		this.capacity = capacity;
+		this.batchSize = batchSize;
+		this.flushIntervalMillis = unit.toMillis(flushInterval);
+		this.backpressure = backpressure;
+		flusher = new Thread(new Runnable() {
+			public void run() {
+				flushContinuously();
+			}
+		}, "johm-write-behind");
+		flusher.setDaemon(true);
+		flusher.start();
+	}
+
+	/**
+	 * Queue a save of the given model, or coalesce it with the pending one.
+	 */
+	public void enqueue(final Object model) {
+		Object key = keyOf(model);
+		synchronized (lock) {
+			if (!running) {
+				throw new JOhmException("WriteBehindBuffer is shut down",
+				    JOhmExceptionMeta.GENERIC_EXCEPTION);
+			}
+			enqueued.incrementAndGet();
+			if (pending.containsKey(key)) {
+				pending.put(key, model);
+				coalesced.incrementAndGet();
+				return;
+			}
+			while (pending.size() >= capacity) {
+				if (backpressure == Backpressure.DROP) {
+					dropped.incrementAndGet();
+					return;
+				}
+				if (backpressure == Backpressure.CALLER_RUNS) {
+					break;
+				}
+				try {
+					lock.wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					dropped.incrementAndGet();
+					return;
+				}
+				if (!running) {
+					throw new JOhmException("WriteBehindBuffer is shut down",
+					    JOhmExceptionMeta.GENERIC_EXCEPTION);
+				}
+			}
+			if (pending.size() < capacity) {
+				pending.put(key, model);
+				if (pending.size() >= batchSize) {
+					lock.notifyAll();
+				}
+				return;
+			}
+		}
+		// CALLER_RUNS on a full buffer, fenced like a batch of the flusher
+		synchronized (lock) {
+			while (inFlight.contains(key)) {
+				try {
+					lock.wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					dropped.incrementAndGet();
+					return;
+				}
+			}
+			inFlight.add(key);
+		}
+		try {
+			write(singletonBatch(model));
+		} finally {
+			synchronized (lock) {
+				inFlight.remove(key);
+				lock.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Forget the pending save of a model, for instance because it was
+	 * deleted, and wait until a batch being written with it is written.
+	 */
+	public void discard(final Class<?> clazz, final long id) {
+		String key = ModelCache.key(clazz, id);
+		synchronized (lock) {
+			pending.remove(key);
+			while (inFlight.contains(key)) {
+				try {
+					lock.wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Write everything queued so far and wait until it is written, including
+	 * a batch the flusher may be writing right now.
+	 */
+	public void flush() {
+		List<Object> batch;
+		List<Object> keys = new ArrayList<Object>();
+		synchronized (lock) {
+			while (flushing || !inFlight.isEmpty()) {
+				try {
+					lock.wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+			batch = drain(Integer.MAX_VALUE, keys);
+			flushing = true;
+		}
+		try {
+			for (int from = 0; from < batch.size(); from += batchSize) {
+				write(batch.subList(from, Math.min(from + batchSize, batch.size())));
+			}
+		} finally {
+			synchronized (lock) {
+				flushing = false;
+				inFlight.removeAll(keys);
+				lock.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Stop taking saves, write what is pending and stop the flusher.
+	 */
+	public void shutdown() {
+		synchronized (lock) {
+			running = false;
+			lock.notifyAll();
+		}
+		try {
+			flusher.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		flush();
+	}
+
+	public int pendingCount() {
+		synchronized (lock) {
+			return pending.size();
+		}
+	}
+
+	public long getEnqueuedCount() {
+		return enqueued.get();
+	}
+
+	public long getCoalescedCount() {
+		return coalesced.get();
+	}
+
+	public long getFlushedCount() {
+		return flushed.get();
+	}
+
+	public long getDroppedCount() {
+		return dropped.get();
+	}
+
+	public long getFailedCount() {
+		return failed.get();
+	}
+
+	private void flushContinuously() {
+		while (true) {
+			List<Object> batch;
+			List<Object> keys = new ArrayList<Object>();
+			synchronized (lock) {
+				long deadline = System.currentTimeMillis() + flushIntervalMillis;
+				while (running && pending.size() < batchSize) {
+					long wait = deadline - System.currentTimeMillis();
+					if (wait <= 0) {
+						break;
+					}
+					try {
+						lock.wait(wait);
+					} catch (InterruptedException e) {
+						running = false;
+					}
+				}
+				if (!running) {
+					return;
+				}
+				while (flushing) {
+					try {
+						lock.wait();
+					} catch (InterruptedException e) {
+						running = false;
+						return;
+					}
+				}
+				batch = drain(batchSize, keys);
+				if (batch.isEmpty()) {
+					if (!pending.isEmpty()) {
+						// Only saves still in flight are pending, wait for them
+						try {
+							lock.wait(flushIntervalMillis);
+						} catch (InterruptedException e) {
+							running = false;
+							return;
+						}
+					}
+					continue;
+				}
+				flushing = true;
+				// Room for blocked savers
+				lock.notifyAll();
+			}
+			try {
+				write(batch);
+			} finally {
+				synchronized (lock) {
+					flushing = false;
+					inFlight.removeAll(keys);
+					lock.notifyAll();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Take up to max pending models, remembering their keys as in flight in
+	 * inFlight and in keys. A model whose key is still in flight is left
+	 * pending, so that its saves land in order.
+	 */
+	private List<Object> drain(int max, List<Object> keys) {
+		List<Object> batch = new ArrayList<Object>(Math.min(max, pending.size()));
+		Iterator<Map.Entry<Object, Object>> models = pending.entrySet()
+		    .iterator();
+		while (models.hasNext() && batch.size() < max) {
+			Map.Entry<Object, Object> model = models.next();
+			if (inFlight.contains(model.getKey())) {
+				continue;
+			}
+			inFlight.add(model.getKey());
+			keys.add(model.getKey());
+			batch.add(model.getValue());
+			models.remove();
+		}
+		return batch;
+	}
+
+	private void write(List<Object> batch) {
+		try {
+			JOhm.saveAll(batch, batch.size());
+			flushed.addAndGet(batch.size());
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			failed.addAndGet(batch.size());
+		}
+	}
+
+	private static List<Object> singletonBatch(Object model) {
+		List<Object> batch = new ArrayList<Object>(1);
+		batch.add(model);
+		return batch;
+	}
+
+	private static Object keyOf(final Object model) {
+		Long id = JOhmUtils.getId(model);
+		if (id == null) {
+			return new IdentityKey(model);
+		}
+		return ModelCache.key(model.getClass(), id);
+	}
+
+	private static final class IdentityKey {
+		private final Object model;
+
+		IdentityKey(Object model) {
+			this.model = model;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return other instanceof IdentityKey
+			    && ((IdentityKey) other).model == model;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(model);
+		}
+	}
+}
@@ -2,6 +2,12 @@ package redis.clients.johm.collections;
 
 import java.lang.reflect.Array;
 import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import redis.clients.johm.Indexed;
 import redis.clients.johm.JOhm;
@@ -22,9 +28,15 @@ import redis.clients.johm.JOhmUtils.JOhmCollectionDataType;
  * RedisArray somewhat of a bridge case between say an Attribute and a dynamic
  * collection like RedisList.
  * 
- * RedisArray does not support null data elements.
+ * A null element is persisted as an empty string, which keeps the positions
+ * of the elements after it and is not indexed. Values that are empty or start
+ * with a backslash are stored with one more backslash in front, so that no
+ * value reads back as null.
  */
 public class RedisArray<T> {
+    private static final String NULL_ELEMENT = "";
+    private static final String ESCAPE = "\\";
+
     private final int length;
     private final Class<? extends T> elementClazz;
     private final JOhmCollectionDataType johmElementType;
@@ -47,99 +59,113 @@ public class RedisArray<T> {
     @SuppressWarnings("unchecked")
     public T[] read() {
         T[] streamed = (T[]) Array.newInstance(elementClazz, length);
-        for (int iter = 0; iter < length; iter++) {
-            streamed[iter] = elementClazz.cast(get(iter));
+        List<String> keys = decode(nest.cat(JOhmUtils.getId(owner))
+                .cat(field.getName()).lrange(0, length - 1));
+        Map<String, T> models = null;
+        if (johmElementType == JOhmCollectionDataType.MODEL) {
+            Set<String> ids = new LinkedHashSet<String>(keys);
+            ids.remove(null);
+            models = JOhmUtils.<T> loadModels(elementClazz, ids);
+        }
+        for (int iter = 0; iter < keys.size() && iter < length; iter++) {
+            String key = keys.get(iter);
+            if (key == null) {
+                continue;
+            }
+            if (johmElementType == JOhmCollectionDataType.PRIMITIVE) {
+                streamed[iter] = (T) Convertor.convert(elementClazz, key);
+            } else if (johmElementType == JOhmCollectionDataType.MODEL) {
+                streamed[iter] = models.get(key);
+            }
         }
         return streamed;
     }
 
+    /**
+     * Replace the persisted array with one pipelined DEL and RPUSH. An
+     * indexed array first reads the old elements with one LRANGE so that only
+     * the index entries that changed are moved.
+     */
     public void write(T[] backingArray) {
-        if (backingArray == null || backingArray.length == 0) {
-            clear();
-        } else {
-            for (int iter = 0; iter < backingArray.length; iter++) {
-                delete(iter);
-                save(backingArray[iter]);
+        String owningId = JOhmUtils.getId(owner).toString();
+        List<String> values = new ArrayList<String>();
+        if (backingArray != null) {
+            for (T element : backingArray) {
+                values.add(element == null ? null : valueOf(element));
             }
         }
-    }
-
-    public Long clear() {
-        return nest.cat(JOhmUtils.getId(owner)).cat(field.getName()).del();
-    }
-
-    private boolean save(T element) {
-        boolean success = false;
-        if (element != null) {
-            if (johmElementType == JOhmCollectionDataType.PRIMITIVE) {
-                success = nest.cat(JOhmUtils.getId(owner)).cat(field.getName())
-                        .rpush(element.toString()) > 0;
-            } else if (johmElementType == JOhmCollectionDataType.MODEL) {
-                success = nest.cat(JOhmUtils.getId(owner)).cat(field.getName())
-                        .rpush(JOhmUtils.getId(element).toString()) > 0;
+        Set<String> setsToLeave = new LinkedHashSet<String>();
+        Set<String> setsToJoin = new LinkedHashSet<String>();
+        if (isIndexed) {
+            Set<String> oldValues = new HashSet<String>(decode(nest.cat(
+                    owningId).cat(field.getName()).lrange(0, -1)));
+            Set<String> newValues = new HashSet<String>(values);
+            oldValues.remove(null);
+            newValues.remove(null);
+            for (String value : oldValues) {
+                if (!newValues.contains(value)) {
+                    setsToLeave.add(nest.cat(field.getName()).cat(value).key());
+                }
             }
-            if (isIndexed) {
-                indexValue(element);
+            for (String value : newValues) {
+                if (!oldValues.contains(value)) {
+                    setsToJoin.add(nest.cat(field.getName()).cat(value).key());
+                }
             }
         }
-        return success;
+        nest.cat(owningId).cat(field.getName()).replaceList(encode(values),
+                owningId, setsToLeave, setsToJoin);
+        if (!setsToLeave.isEmpty() || !setsToJoin.isEmpty()) {
+            JOhm.indexChanged(owner, field.getName());
+        }
+        JOhm.evict(owner);
     }
 
-    private void delete(int index) {
-        T element = this.get(index);
-        internalDelete(element);
+    public Long clear() {
+        Long deleted = nest.cat(JOhmUtils.getId(owner)).cat(field.getName())
+                .del();
+        JOhm.evict(owner);
+        return deleted;
     }
 
-    @SuppressWarnings("unchecked")
-    private T get(int index) {
-        T element = null;
-        String key = nest.cat(JOhmUtils.getId(owner)).cat(field.getName())
-                .lindex(index);
-        if (!JOhmUtils.isNullOrEmpty(key)) {
-            if (johmElementType == JOhmCollectionDataType.PRIMITIVE) {
-                element = (T) Convertor.convert(elementClazz, key);
-            } else if (johmElementType == JOhmCollectionDataType.MODEL) {
-                element = JOhm.<T> get(elementClazz, Integer.valueOf(key));
+    private static List<String> encode(List<String> values) {
+        List<String> stored = new ArrayList<String>(values.size());
+        for (String value : values) {
+            if (value == null) {
+                stored.add(NULL_ELEMENT);
+            } else if (value.length() == 0 || value.startsWith(ESCAPE)) {
+                stored.add(ESCAPE + value);
+            } else {
+                stored.add(value);
             }
         }
-        return element;
+        return stored;
     }
 
-    private void indexValue(T element) {
-        if (johmElementType == JOhmCollectionDataType.PRIMITIVE) {
-            nest.cat(field.getName()).cat(element.toString()).sadd(
-                    JOhmUtils.getId(owner).toString());
-        } else if (johmElementType == JOhmCollectionDataType.MODEL) {
-            nest.cat(field.getName()).cat(JOhmUtils.getId(element)).sadd(
-                    JOhmUtils.getId(owner).toString());
-        }
-    }
-
-    private void unindexValue(T element) {
-        if (johmElementType == JOhmCollectionDataType.PRIMITIVE) {
-            nest.cat(field.getName()).cat(element.toString()).srem(
-                    JOhmUtils.getId(owner).toString());
-        } else if (johmElementType == JOhmCollectionDataType.MODEL) {
-            nest.cat(field.getName()).cat(JOhmUtils.getId(element)).srem(
-                    JOhmUtils.getId(owner).toString());
+    /**
+     * The values of the stored elements, null for a null element.
+     */
+    private static List<String> decode(List<String> stored) {
+        List<String> values = new ArrayList<String>(stored.size());
+        for (String element : stored) {
+            if (NULL_ELEMENT.equals(element)) {
+                values.add(null);
+            } else if (element.startsWith(ESCAPE)) {
+                values.add(element.substring(ESCAPE.length()));
+            } else {
+                values.add(element);
+            }
         }
+        return values;
     }
 
-    private boolean internalDelete(T element) {
-        if (element == null) {
-            return false;
-        }
-        Long lrem = 0L;
-        if (johmElementType == JOhmCollectionDataType.PRIMITIVE) {
-            lrem = nest.cat(JOhmUtils.getId(owner)).cat(field.getName()).lrem(
-                    1, element.toString());
-        } else if (johmElementType == JOhmCollectionDataType.MODEL) {
-            lrem = nest.cat(JOhmUtils.getId(owner)).cat(field.getName()).lrem(
-                    1, JOhmUtils.getId(element).toString());
-        }
-        if (isIndexed) {
-            unindexValue(element);
+    /**
+     * The string an element is indexed as, and stored as once encoded.
+     */
+    private String valueOf(T element) {
+        if (johmElementType == JOhmCollectionDataType.MODEL) {
+            return JOhmUtils.getId(element).toString();
         }
-        return lrem > 0L;
+        return element.toString();
     }
-}
\ No newline at end of file
+}
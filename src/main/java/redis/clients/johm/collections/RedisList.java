@@ -6,6 +6,7 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
 
 import redis.clients.johm.Indexed;
 import redis.clients.johm.JOhm;
@@ -64,6 +65,7 @@ public class RedisList<T> implements java.util.List<T> {
 
     public void clear() {
         nest.cat(JOhmUtils.getId(owner)).cat(field.getName()).del();
+        JOhm.evict(owner);
     }
 
     public boolean contains(Object o) {
@@ -83,7 +85,7 @@ public class RedisList<T> implements java.util.List<T> {
             if (johmElementType == JOhmCollectionDataType.PRIMITIVE) {
                 element = (T) Convertor.convert(elementClazz, key);
             } else if (johmElementType == JOhmCollectionDataType.MODEL) {
-                element = JOhm.<T> get(elementClazz, Integer.valueOf(key));
+                element = JOhm.<T> get(elementClazz, Long.parseLong(key));
             }
         }
         return element;
@@ -181,6 +183,7 @@ public class RedisList<T> implements java.util.List<T> {
             }
             indexValue(element);
         }
+        JOhm.evict(owner);
         return success;
     }
 
@@ -193,6 +196,7 @@ public class RedisList<T> implements java.util.List<T> {
                 nest.cat(field.getName()).cat(JOhmUtils.getId(element)).sadd(
                         JOhmUtils.getId(owner).toString());
             }
+            JOhm.indexChanged(owner, field.getName());
         }
     }
 
@@ -205,6 +209,7 @@ public class RedisList<T> implements java.util.List<T> {
                 nest.cat(field.getName()).cat(JOhmUtils.getId(element)).srem(
                         JOhmUtils.getId(owner).toString());
             }
+            JOhm.indexChanged(owner, field.getName());
         }
     }
 
@@ -219,6 +224,7 @@ public class RedisList<T> implements java.util.List<T> {
             }
             indexValue(element);
         }
+        JOhm.evict(owner);
     }
 
     private boolean internalRemove(T element) {
@@ -235,6 +241,7 @@ public class RedisList<T> implements java.util.List<T> {
             unindexValue(element);
             success = lrem > 0L;
         }
+        JOhm.evict(owner);
         return success;
     }
 
@@ -250,11 +257,15 @@ public class RedisList<T> implements java.util.List<T> {
 
         List<String> keys = nest.cat(JOhmUtils.getId(owner)).cat(
                 field.getName()).lrange(0, -1);
+        Map<String, T> models = null;
+        if (johmElementType == JOhmCollectionDataType.MODEL) {
+            models = JOhmUtils.loadModels(elementClazz, keys);
+        }
         for (String key : keys) {
             if (johmElementType == JOhmCollectionDataType.PRIMITIVE) {
                 elements.add((T) Convertor.convert(elementClazz, key));
             } else if (johmElementType == JOhmCollectionDataType.MODEL) {
-                elements.add((T) JOhm.get(elementClazz, Integer.valueOf(key)));
+                elements.add(models.get(key));
             }
         }
         return elements;
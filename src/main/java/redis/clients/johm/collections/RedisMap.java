@@ -54,6 +54,7 @@ public class RedisMap<K, V> implements Map<K, V> {
                 nest.cat(field.getName()).cat(JOhmUtils.getId(element)).sadd(
                         JOhmUtils.getId(owner).toString());
             }
+            JOhm.indexChanged(owner, field.getName());
         }
     }
 
@@ -66,6 +67,7 @@ public class RedisMap<K, V> implements Map<K, V> {
                 nest.cat(field.getName()).cat(JOhmUtils.getId(element)).srem(
                         JOhmUtils.getId(owner).toString());
             }
+            JOhm.indexChanged(owner, field.getName());
         }
     }
 
@@ -77,6 +79,7 @@ public class RedisMap<K, V> implements Map<K, V> {
                     entry.getKey());
         }
         nest.cat(JOhmUtils.getId(owner)).cat(field.getName()).del();
+        JOhm.evict(owner);
     }
 
     public boolean containsKey(Object key) {
@@ -107,7 +110,7 @@ public class RedisMap<K, V> implements Map<K, V> {
             if (johmValueType == JOhmCollectionDataType.PRIMITIVE) {
                 value = (V) Convertor.convert(valueClazz, valueKey);
             } else if (johmValueType == JOhmCollectionDataType.MODEL) {
-                value = JOhm.<V> get(valueClazz, Integer.parseInt(valueKey));
+                value = JOhm.<V> get(valueClazz, Long.parseLong(valueKey));
             }
         }
         return value;
@@ -120,12 +123,17 @@ public class RedisMap<K, V> implements Map<K, V> {
     @SuppressWarnings("unchecked")
     public Set<K> keySet() {
         Set<K> keys = new LinkedHashSet<K>();
-        for (String key : nest.cat(JOhmUtils.getId(owner)).cat(field.getName())
-                .hkeys()) {
+        Set<String> savedKeys = nest.cat(JOhmUtils.getId(owner)).cat(
+                field.getName()).hkeys();
+        Map<String, K> keyModels = null;
+        if (johmKeyType == JOhmCollectionDataType.MODEL) {
+            keyModels = JOhmUtils.loadModels(keyClazz, savedKeys);
+        }
+        for (String key : savedKeys) {
             if (johmKeyType == JOhmCollectionDataType.PRIMITIVE) {
                 keys.add((K) JOhmUtils.Convertor.convert(keyClazz, key));
             } else if (johmKeyType == JOhmCollectionDataType.MODEL) {
-                keys.add(JOhm.<K> get(keyClazz, Integer.parseInt(key)));
+                keys.add(keyModels.get(key));
             }
         }
         return keys;
@@ -154,6 +162,7 @@ public class RedisMap<K, V> implements Map<K, V> {
                     JOhmUtils.getId(key).toString());
         }
         unindexValue((K) key);
+        JOhm.evict(owner);
         return value;
     }
 
@@ -191,6 +200,7 @@ public class RedisMap<K, V> implements Map<K, V> {
         hash.put(keyString, valueString);
         nest.cat(JOhmUtils.getId(owner)).cat(field.getName()).hmset(hash);
         indexValue(key);
+        JOhm.evict(owner);
         return value;
     }
 
@@ -199,6 +209,14 @@ public class RedisMap<K, V> implements Map<K, V> {
         Map<String, String> savedHash = nest.cat(JOhmUtils.getId(owner)).cat(
                 field.getName()).hgetAll();
         Map<K, V> backingMap = new HashMap<K, V>();
+        Map<String, K> keyModels = null;
+        Map<String, V> valueModels = null;
+        if (johmKeyType == JOhmCollectionDataType.MODEL) {
+            keyModels = JOhmUtils.loadModels(keyClazz, savedHash.keySet());
+        }
+        if (johmValueType == JOhmCollectionDataType.MODEL) {
+            valueModels = JOhmUtils.loadModels(valueClazz, savedHash.values());
+        }
         K savedKey = null;
         V savedValue = null;
         for (Map.Entry<String, String> entry : savedHash.entrySet()) {
@@ -212,20 +230,16 @@ public class RedisMap<K, V> implements Map<K, V> {
                     && johmValueType == JOhmCollectionDataType.MODEL) {
                 savedKey = (K) JOhmUtils.Convertor.convert(keyClazz, entry
                         .getKey());
-                savedValue = JOhm.<V> get(valueClazz, Integer.parseInt(entry
-                        .getValue()));
+                savedValue = valueModels.get(entry.getValue());
             } else if (johmKeyType == JOhmCollectionDataType.MODEL
                     && johmValueType == JOhmCollectionDataType.PRIMITIVE) {
-                savedKey = JOhm.<K> get(keyClazz, Integer.parseInt(entry
-                        .getKey()));
+                savedKey = keyModels.get(entry.getKey());
                 savedValue = (V) JOhmUtils.Convertor.convert(valueClazz, entry
                         .getValue());
             } else if (johmKeyType == JOhmCollectionDataType.MODEL
                     && johmValueType == JOhmCollectionDataType.MODEL) {
-                savedKey = JOhm.<K> get(keyClazz, Integer.parseInt(entry
-                        .getKey()));
-                savedValue = JOhm.<V> get(valueClazz, Integer.parseInt(entry
-                        .getValue()));
+                savedKey = keyModels.get(entry.getKey());
+                savedValue = valueModels.get(entry.getValue());
             }
 
             backingMap.put(savedKey, savedValue);
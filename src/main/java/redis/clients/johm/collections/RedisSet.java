@@ -4,6 +4,7 @@ import java.lang.reflect.Field;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
 
 import redis.clients.johm.Indexed;
@@ -48,6 +49,7 @@ public class RedisSet<T> implements Set<T> {
                 nest.cat(field.getName()).cat(JOhmUtils.getId(element)).sadd(
                         JOhmUtils.getId(owner).toString());
             }
+            JOhm.indexChanged(owner, field.getName());
         }
     }
 
@@ -60,6 +62,7 @@ public class RedisSet<T> implements Set<T> {
                 nest.cat(field.getName()).cat(JOhmUtils.getId(element)).srem(
                         JOhmUtils.getId(owner).toString());
             }
+            JOhm.indexChanged(owner, field.getName());
         }
     }
 
@@ -135,6 +138,7 @@ public class RedisSet<T> implements Set<T> {
 
     public void clear() {
         nest.cat(JOhmUtils.getId(owner)).cat(field.getName()).del();
+        JOhm.evict(owner);
     }
 
     private boolean internalAdd(T element) {
@@ -149,6 +153,7 @@ public class RedisSet<T> implements Set<T> {
             }
             indexValue(element);
         }
+        JOhm.evict(owner);
         return success;
     }
 
@@ -164,6 +169,7 @@ public class RedisSet<T> implements Set<T> {
             }
             unindexValue(element);
         }
+        JOhm.evict(owner);
         return success;
     }
 
@@ -172,11 +178,15 @@ public class RedisSet<T> implements Set<T> {
         Set<String> keys = nest.cat(JOhmUtils.getId(owner))
                 .cat(field.getName()).smembers();
         Set<T> elements = new HashSet<T>();
+        Map<String, T> models = null;
+        if (johmElementType == JOhmCollectionDataType.MODEL) {
+            models = JOhmUtils.loadModels(elementClazz, keys);
+        }
         for (String key : keys) {
             if (johmElementType == JOhmCollectionDataType.PRIMITIVE) {
                 elements.add((T) Convertor.convert(elementClazz, key));
             } else if (johmElementType == JOhmCollectionDataType.MODEL) {
-                elements.add((T) JOhm.get(elementClazz, Integer.valueOf(key)));
+                elements.add(models.get(key));
             }
         }
         return elements;
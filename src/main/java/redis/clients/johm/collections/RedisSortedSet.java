@@ -4,6 +4,7 @@ import java.lang.reflect.Field;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Set;
 
 import redis.clients.johm.Indexed;
@@ -38,8 +39,9 @@ public class RedisSortedSet<T> implements Set<T> {
         Set<String> ids = nest.cat(JOhmUtils.getId(owner)).cat(field.getName())
                 .zrange(0, -1);
         Set<T> elements = new LinkedHashSet<T>();
+        Map<String, T> models = JOhmUtils.loadModels(clazz, ids);
         for (String id : ids) {
-            elements.add((T) JOhm.get(clazz, Integer.valueOf(id)));
+            elements.add(models.get(id));
         }
         return elements;
     }
@@ -48,6 +50,7 @@ public class RedisSortedSet<T> implements Set<T> {
         if (field.isAnnotationPresent(Indexed.class)) {
             nest.cat(field.getName()).cat(JOhmUtils.getId(element)).sadd(
                     JOhmUtils.getId(owner).toString());
+            JOhm.indexChanged(owner, field.getName());
         }
     }
 
@@ -55,6 +58,7 @@ public class RedisSortedSet<T> implements Set<T> {
         if (field.isAnnotationPresent(Indexed.class)) {
             nest.cat(field.getName()).cat(JOhmUtils.getId(element)).srem(
                     JOhmUtils.getId(owner).toString());
+            JOhm.indexChanged(owner, field.getName());
         }
     }
 
@@ -86,6 +90,7 @@ public class RedisSortedSet<T> implements Set<T> {
                         JOhmExceptionMeta.NO_SUCH_FIELD_EXCEPTION);
             }
         }
+        JOhm.evict(owner);
         return success;
     }
 
@@ -96,6 +101,7 @@ public class RedisSortedSet<T> implements Set<T> {
                     .srem(JOhmUtils.getId(element).toString()) > 0;
             unindexValue(element);
         }
+        JOhm.evict(owner);
         return success;
     }
 
@@ -113,6 +119,7 @@ public class RedisSortedSet<T> implements Set<T> {
 
     public void clear() {
         nest.cat(JOhmUtils.getId(owner)).cat(field.getName()).del();
+        JOhm.evict(owner);
     }
 
     public boolean contains(Object o) {
@@ -1,13 +1,20 @@
 package redis.clients.johm;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Test;
 
+import redis.clients.jedis.Jedis;
+import redis.clients.johm.models.Citizen;
 import redis.clients.johm.models.Country;
 import redis.clients.johm.models.FaultyModel;
 import redis.clients.johm.models.Item;
+import redis.clients.johm.models.Person;
+import redis.clients.johm.models.Token;
 import redis.clients.johm.models.User;
 
 public class BasicPersistenceTest extends JOhmTestBase {
@@ -318,4 +325,625 @@ public class BasicPersistenceTest extends JOhmTestBase {
         Set<User> users = JOhm.getAll(User.class);
         assertEquals(2, users.size());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void getSeveralInIdOrder() {
+        Country first = new Country();
+        first.setName("first");
+        JOhm.save(first);
+        Country second = new Country();
+        second.setName("second");
+        JOhm.save(second);
+
+        List<Country> countries = JOhm.get(Country.class, second.getId(),
+                12345L, first.getId());
+        assertEquals(2, countries.size());
+        assertEquals(second, countries.get(0));
+        assertEquals(first, countries.get(1));
+
+        assertTrue(JOhm.<Country> get(Country.class, new long[0]).isEmpty());
+    }
+
+    @Test
+    public void getWithFetchPlan() {
+        Country somewhere = new Country();
+        somewhere.setName("somewhere");
+        JOhm.save(somewhere);
+
+        User user = new User();
+        user.setEmployeeNumber(1);
+        user.setDepartmentNumber(2);
+        user.setName("foo");
+        user.setCountry(somewhere);
+        JOhm.save(user);
+
+        User shallow = JOhm.get(User.class, user.getId(), FetchPlan.NONE);
+        assertEquals(user.getName(), shallow.getName());
+        assertNull(shallow.getCountry());
+
+        User deep = JOhm.get(User.class, user.getId(), FetchPlan.depth(1));
+        assertEquals(somewhere, deep.getCountry());
+    }
+
+    @Test
+    public void lazyReferenceIsLoadedOnFirstAccess() {
+        Country somewhere = new Country();
+        somewhere.setName("somewhere");
+        JOhm.save(somewhere);
+
+        Citizen citizen = new Citizen();
+        citizen.setName("foo");
+        citizen.setCountry(somewhere);
+        JOhm.save(citizen);
+
+        Citizen savedCitizen = JOhm.get(Citizen.class, citizen.getId());
+        assertEquals("foo", savedCitizen.getName());
+        assertFalse(savedCitizen.getCountry().isLoaded());
+        assertEquals(somewhere.getId(),
+                JOhmUtils.getId(savedCitizen.getCountry()));
+        assertFalse(savedCitizen.getCountry().isLoaded());
+        assertEquals(somewhere, savedCitizen.getCountry().get());
+    }
+
+    @Test
+    public void getProjection() {
+        User user = new User();
+        user.setEmployeeNumber(1);
+        user.setDepartmentNumber(2);
+        user.setName("foo");
+        user.setAge(42);
+        JOhm.save(user);
+
+        User partialUser = JOhm.get(User.class, user.getId(), "name");
+        assertEquals(user.getId(), partialUser.getId());
+        assertEquals("foo", partialUser.getName());
+        assertEquals(0, partialUser.getAge());
+        assertNull(partialUser.getLikes());
+        assertNull(JOhm.get(User.class, 12345L, "name"));
+    }
+
+    @Test(expected = JOhmException.class)
+    public void shouldNotSavePartialModel() {
+        User user = new User();
+        user.setEmployeeNumber(1);
+        user.setDepartmentNumber(2);
+        user.setName("foo");
+        JOhm.save(user);
+
+        User partialUser = JOhm.get(User.class, user.getId(), "name");
+        JOhm.save(partialUser);
+    }
+
+    @Test
+    public void getThroughNearCache() {
+        ModelCache modelCache = new ModelCache(100, 1, TimeUnit.MINUTES);
+        JOhm.setCache(modelCache);
+        try {
+            Country somewhere = new Country();
+            somewhere.setName("somewhere");
+            JOhm.save(somewhere);
+
+            assertEquals("somewhere",
+                    JOhm.<Country> get(Country.class, somewhere.getId()).getName());
+            assertEquals("somewhere",
+                    JOhm.<Country> get(Country.class, somewhere.getId()).getName());
+            assertEquals(1, modelCache.stats().hitCount());
+
+            somewhere.setName("elsewhere");
+            JOhm.save(somewhere);
+            assertEquals("elsewhere",
+                    JOhm.<Country> get(Country.class, somewhere.getId()).getName());
+
+            JOhm.delete(Country.class, somewhere.getId());
+            assertNull(JOhm.get(Country.class, somewhere.getId()));
+        } finally {
+            JOhm.setCache(null);
+        }
+    }
+
+    @Test
+    public void nearCacheIsInvalidatedOverPubSub() throws InterruptedException {
+        ModelCache modelCache = new ModelCache(100, 1, TimeUnit.MINUTES);
+        CacheInvalidator invalidator = new CacheInvalidator(modelCache,
+                "johm:invalidation");
+        JOhm.setCache(modelCache);
+        invalidator.start();
+        try {
+            for (int i = 0; i < 100 && !invalidator.isSubscribed(); i++) {
+                Thread.sleep(20);
+            }
+            assertTrue(invalidator.isSubscribed());
+
+            Country somewhere = new Country();
+            somewhere.setName("somewhere");
+            JOhm.save(somewhere);
+            JOhm.get(Country.class, somewhere.getId());
+            assertEquals(1, modelCache.size());
+
+            Jedis jedis = jedisPool.getResource();
+            jedis.publish("johm:invalidation", "Country:" + somewhere.getId());
+            jedisPool.returnResource(jedis);
+            for (int i = 0; i < 100 && modelCache.size() > 0; i++) {
+                Thread.sleep(20);
+            }
+            assertEquals(0, modelCache.size());
+        } finally {
+            invalidator.stop();
+            JOhm.setCache(null);
+        }
+    }
+
+    @Test
+    public void sessionLoadsEachModelOnce() {
+        Country somewhere = new Country();
+        somewhere.setName("somewhere");
+        JOhm.save(somewhere);
+        Item item = new Item();
+        item.setName("bar");
+        JOhm.save(item);
+        User user = new User();
+        user.setEmployeeNumber(1);
+        user.setDepartmentNumber(2);
+        user.setName("foo");
+        user.setCountry(somewhere);
+        JOhm.save(user);
+        user.getLikes().add(item);
+        User otherUser = new User();
+        otherUser.setEmployeeNumber(1);
+        otherUser.setDepartmentNumber(3);
+        otherUser.setName("foo");
+        otherUser.setCountry(somewhere);
+        JOhm.save(otherUser);
+
+        JOhmSession session = JOhmSession.open();
+        try {
+            Country country = JOhm.get(Country.class, somewhere.getId());
+            assertSame(country, JOhm.get(Country.class, somewhere.getId()));
+            List<User> users = JOhm.find(User.class, "name", "foo",
+                    JOhm.getHashTag("employeeNumber", "1"));
+            assertEquals(2, users.size());
+            assertSame(country, users.get(0).getCountry());
+            assertSame(country, users.get(1).getCountry());
+
+            User loadedUser = JOhm.get(User.class, user.getId());
+            assertSame(loadedUser.getLikes().get(0),
+                    loadedUser.getLikes().iterator().next());
+            assertSame(JOhm.get(Item.class, item.getId()),
+                    loadedUser.getLikes().get(0));
+        } finally {
+            session.close();
+        }
+        assertNull(JOhmSession.current());
+        assertNotSame(JOhm.get(Country.class, somewhere.getId()),
+                JOhm.get(Country.class, somewhere.getId()));
+    }
+
+    @Test
+    public void saveAllInBatches() {
+        List<User> users = new ArrayList<User>();
+        for (int i = 0; i < 5; i++) {
+            User user = new User();
+            user.setEmployeeNumber(1);
+            user.setDepartmentNumber(2);
+            user.setName("foo");
+            user.setAge(i);
+            users.add(user);
+        }
+        List<User> savedUsers = JOhm.saveAll(users, 2);
+        assertEquals(5, savedUsers.size());
+        for (int i = 0; i < 5; i++) {
+            assertSame(users.get(i), savedUsers.get(i));
+            assertNotNull(users.get(i).getId());
+            User savedUser = JOhm.get(User.class, users.get(i).getId());
+            assertEquals(i, savedUser.getAge());
+        }
+        assertEquals(5, JOhm.getAll(User.class).size());
+        assertEquals(5, JOhm.find(User.class, "name", "foo",
+                JOhm.getHashTag("employeeNumber", "1")).size());
+
+        users.get(0).setName("bar");
+        JOhm.saveAll(users, 10);
+        assertEquals(4, JOhm.find(User.class, "name", "foo",
+                JOhm.getHashTag("employeeNumber", "1")).size());
+        assertEquals(5, JOhm.getAll(User.class).size());
+    }
+
+    @Test
+    public void saveWritesOnlyWhatChanged() {
+        User user = new User();
+        user.setEmployeeNumber(1);
+        user.setDepartmentNumber(2);
+        user.setName("foo");
+        user.setAge(10);
+        JOhm.save(user);
+
+        User loadedUser = JOhm.get(User.class, user.getId());
+        loadedUser.setName("bar");
+        loadedUser.setAge(20);
+        JOhm.save(loadedUser);
+
+        String hashTag = JOhm.getHashTag("employeeNumber", "1");
+        assertEquals(0, JOhm.find(User.class, "name", "foo", hashTag).size());
+        assertEquals(1, JOhm.find(User.class, "name", "bar", hashTag).size());
+        assertEquals(0, JOhm.find(User.class, "age", 10, hashTag).size());
+        assertEquals(1, JOhm.find(User.class, "age", 20, hashTag).size());
+
+        loadedUser.setName(null);
+        JOhm.save(loadedUser);
+        assertEquals(0, JOhm.find(User.class, "name", "bar", hashTag).size());
+        User savedUser = JOhm.get(User.class, user.getId());
+        assertNull(savedUser.getName());
+        assertEquals(20, savedUser.getAge());
+
+        Jedis jedis = jedisPool.getResource();
+        jedis.hset("User:" + user.getId(), "salary", "3.5");
+        jedisPool.returnResource(jedis);
+        savedUser.setAge(30);
+        JOhm.save(savedUser);
+        // Fields that did not change are not written back
+        assertEquals(3.5f, JOhm.<User> get(User.class, user.getId())
+                .getSalary(), 0f);
+    }
+
+    @Test
+    public void scriptedSave() {
+        JOhm.setScriptedSave(true);
+        try {
+            User user = new User();
+            user.setEmployeeNumber(1);
+            user.setDepartmentNumber(2);
+            user.setName("foo");
+            user.setAge(10);
+            JOhm.save(user);
+
+            String hashTag = JOhm.getHashTag("employeeNumber", "1");
+            assertEquals(1, JOhm.find(User.class, "name", "foo", hashTag).size());
+            assertEquals(1, JOhm.find(User.class, "age", 10, hashTag).size());
+
+            Jedis jedis = jedisPool.getResource();
+            jedis.scriptFlush();
+            jedisPool.returnResource(jedis);
+
+            User loadedUser = JOhm.get(User.class, user.getId());
+            loadedUser.setName("bar");
+            loadedUser.setAge(20);
+            JOhm.save(loadedUser);
+
+            assertEquals(0, JOhm.find(User.class, "name", "foo", hashTag).size());
+            assertEquals(1, JOhm.find(User.class, "name", "bar", hashTag).size());
+            assertEquals(0, JOhm.find(User.class, "age", 10, hashTag).size());
+            assertEquals(1, JOhm.find(User.class, "age", 20, hashTag).size());
+            assertEquals("bar", JOhm.<User> get(User.class, user.getId())
+                    .getName());
+        } finally {
+            JOhm.setScriptedSave(false);
+        }
+    }
+
+    @Test
+    public void writeBehindCoalescesSaves() {
+        WriteBehindBuffer buffer = new WriteBehindBuffer(100, 10, 1,
+                TimeUnit.HOURS, WriteBehindBuffer.Backpressure.BLOCK);
+        JOhm.setWriteBehind(Country.class, buffer);
+        try {
+            Country country = new Country();
+            country.setName("foo");
+            JOhm.save(country);
+            // The id is reserved before the save is written
+            Long id = JOhm.getId(country);
+            assertNotNull(id);
+            assertNull(JOhm.get(Country.class, id));
+
+            buffer.flush();
+            assertEquals("foo", JOhm.<Country> get(Country.class, id)
+                    .getName());
+
+            for (int i = 0; i < 5; i++) {
+                country.setName("bar" + i);
+                JOhm.save(country);
+            }
+            assertEquals(1, buffer.pendingCount());
+            assertEquals("foo", JOhm.<Country> get(Country.class, id)
+                    .getName());
+
+            buffer.flush();
+            assertEquals(0, buffer.pendingCount());
+            assertEquals("bar4", JOhm.<Country> get(Country.class, id)
+                    .getName());
+            assertEquals(6, buffer.getEnqueuedCount());
+            assertEquals(4, buffer.getCoalescedCount());
+            assertEquals(2, buffer.getFlushedCount());
+            assertEquals(0, buffer.getFailedCount());
+
+            country.setName("baz");
+            JOhm.save(country);
+            JOhm.delete(Country.class, id);
+            buffer.flush();
+            assertNull(JOhm.get(Country.class, id));
+        } finally {
+            JOhm.setWriteBehind(Country.class, null);
+            buffer.shutdown();
+        }
+    }
+
+    @Test
+    public void saveWithChildrenSavesTheWholeGraph() {
+        Country country = new Country();
+        country.setName("somewhere");
+        Person alice = new Person();
+        alice.setName("alice");
+        alice.setCountry(country);
+        Person bob = new Person();
+        bob.setName("bob");
+        bob.setCountry(country);
+        alice.setFriend(bob);
+        bob.setFriend(alice);
+
+        JOhm.save(alice, true);
+        assertNotNull(bob.getId());
+        assertNotNull(country.getId());
+
+        Person savedAlice = JOhm.get(Person.class, alice.getId(),
+                FetchPlan.ALL);
+        assertEquals("bob", savedAlice.getFriend().getName());
+        assertSame(savedAlice, savedAlice.getFriend().getFriend());
+        assertEquals("somewhere", savedAlice.getCountry().getName());
+        assertEquals(1, JOhm.find(Person.class, "friend", bob.getId(), null)
+                .size());
+
+        bob.setName("robert");
+        country.setName("elsewhere");
+        JOhm.save(alice, true);
+        assertEquals(1, JOhm.find(Person.class, "name", "robert", null).size());
+        assertEquals(0, JOhm.find(Person.class, "name", "bob", null).size());
+        assertEquals("elsewhere", JOhm.<Country> get(Country.class,
+                country.getId()).getName());
+    }
+
+    @Test
+    public void bulkLoadWithIndexLater() {
+        List<Country> countries = new ArrayList<Country>();
+        for (int i = 0; i < 250; i++) {
+            Country country = new Country();
+            country.setName(i % 2 == 0 ? "even" : "odd");
+            countries.add(country);
+        }
+        final List<Long> progress = new ArrayList<Long>();
+        JOhmBulkLoader loader = new JOhmBulkLoader(20, 3).setIndexLater(true)
+                .setIndexBufferSize(64).setProgressListener(
+                        new JOhmBulkLoader.ProgressListener() {
+                            public void onProgress(
+                                    JOhmBulkLoader.Progress current) {
+                                synchronized (progress) {
+                                    progress.add(current.getLoaded());
+                                }
+                            }
+                        });
+        JOhmBulkLoader.Progress done = loader.load(countries);
+
+        assertEquals(250, done.getLoaded());
+        assertEquals(13, progress.size());
+        assertEquals(125, JOhm.find(Country.class, "name", "even", null)
+                .size());
+        assertEquals(125, JOhm.find(Country.class, "name", "odd", null)
+                .size());
+        assertEquals(250, JOhm.getAll(Country.class).size());
+        Long id = countries.get(7).getId();
+        assertEquals("odd", JOhm.<Country> get(Country.class, id).getName());
+    }
+
+    @Test
+    public void deleteAllInOnePipeline() {
+        long[] ids = new long[5];
+        for (int i = 0; i < ids.length; i++) {
+            Country country = new Country();
+            country.setName(i < 3 ? "doomed" : "spared");
+            JOhm.save(country);
+            ids[i] = country.getId();
+        }
+
+        assertEquals(3, JOhm.deleteAll(Country.class, ids[0], ids[1], ids[2],
+                1000L));
+        assertNull(JOhm.get(Country.class, ids[0]));
+        assertNull(JOhm.get(Country.class, ids[2]));
+        assertNotNull(JOhm.get(Country.class, ids[3]));
+        assertEquals(0, JOhm.find(Country.class, "name", "doomed", null)
+                .size());
+        assertEquals(2, JOhm.find(Country.class, "name", "spared", null)
+                .size());
+        assertEquals(2, JOhm.getAll(Country.class).size());
+        assertEquals(0, JOhm.deleteAll(Country.class, ids[0]));
+    }
+
+    @Test
+    public void deleteUsesIndexManifest() {
+        Country country = new Country();
+        country.setName("somewhere");
+        JOhm.save(country);
+        Person person = new Person();
+        person.setName("alice");
+        person.setCountry(country);
+        JOhm.save(person);
+        String member = String.valueOf(person.getId());
+
+        Jedis jedis = jedisPool.getResource();
+        assertTrue(jedis.sismember("Person:country:name:somewhere", member));
+        assertTrue(jedis.smembers("Person:" + member + ":_indexes").contains(
+                "s:Person:country:name:somewhere"));
+
+        // The index of the person now disagrees with its country
+        country.setName("elsewhere");
+        JOhm.save(country);
+        assertTrue(JOhm.delete(Person.class, person.getId()));
+
+        assertFalse(jedis.sismember("Person:country:name:somewhere", member));
+        assertFalse(jedis.sismember("Person:name:alice", member));
+        assertFalse(jedis.sismember("Person:all", member));
+        assertFalse(jedis.exists("Person:" + member + ":_indexes"));
+        assertFalse(jedis.exists("Person:" + member));
+        jedisPool.returnResource(jedis);
+        assertFalse(JOhm.delete(Person.class, person.getId()));
+    }
+
+    @Test
+    public void purgeDropsEveryKeyOfAClass() {
+        for (int i = 0; i < 30; i++) {
+            Country country = new Country();
+            country.setName("country" + i);
+            JOhm.save(country);
+        }
+        Item item = new Item();
+        item.setName("kept");
+        JOhm.save(item);
+
+        assertTrue(JOhm.purge(Country.class, 7, 100000) > 60);
+        assertEquals(0, JOhm.getAll(Country.class).size());
+        assertEquals(0, JOhm.find(Country.class, "name", "country3", null)
+                .size());
+        Jedis jedis = jedisPool.getResource();
+        // The id counter is kept for ids reserved before the purge
+        assertTrue(jedis.exists("Country:id"));
+        jedisPool.returnResource(jedis);
+        assertEquals("kept", JOhm.<Item> get(Item.class, item.getId())
+                .getName());
+
+        Country country = new Country();
+        country.setName("again");
+        JOhm.save(country);
+        assertEquals(Long.valueOf(31), country.getId());
+    }
+
+    @Test
+    public void expiredModelsAreSweptFromTheirIndexes() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            Token token = new Token();
+            token.setOwner("foo");
+            JOhm.save(token);
+        }
+        Jedis jedis = jedisPool.getResource();
+        assertTrue(jedis.ttl("Token:1") > 0);
+        assertEquals(Long.valueOf(3), jedis.zcard("Token:_expiry"));
+        assertEquals(3, JOhm.find(Token.class, true, new NVField("owner", "foo"))
+                .size());
+
+        Thread.sleep(2100);
+        // Still indexed, but no longer found
+        assertEquals(Long.valueOf(3), jedis.scard("Token:owner:foo"));
+        assertEquals(0, JOhm.find(Token.class, true, new NVField("owner", "foo"))
+                .size());
+        assertEquals(0, JOhm.find(Token.class, "owner", "foo", null).size());
+
+        assertEquals(3, new ExpirySweeper(Token.class, 1000, 2).sweep());
+        assertFalse(jedis.exists("Token:owner:foo"));
+        assertFalse(jedis.exists("Token:all"));
+        assertFalse(jedis.exists("Token:_expiry"));
+        assertFalse(jedis.exists("Token:1:_indexes"));
+        jedisPool.returnResource(jedis);
+    }
+
+    @Test
+    public void saveAfterDeleteWritesTheWholeModel() {
+        User user = new User();
+        user.setEmployeeNumber(1);
+        user.setDepartmentNumber(2);
+        user.setName("foo");
+        user.setAge(10);
+        JOhm.save(user);
+
+        User loadedUser = JOhm.get(User.class, user.getId());
+        assertTrue(JOhm.delete(User.class, user.getId()));
+        loadedUser.setAge(20);
+        JOhm.save(loadedUser);
+
+        User savedUser = JOhm.get(User.class, user.getId());
+        assertEquals("foo", savedUser.getName());
+        assertEquals(20, savedUser.getAge());
+        assertEquals(1, savedUser.getEmployeeNumber());
+        String hashTag = JOhm.getHashTag("employeeNumber", "1");
+        assertEquals(1, JOhm.find(User.class, "name", "foo", hashTag).size());
+        assertEquals(1, JOhm.find(User.class, "age", 20, hashTag).size());
+
+        User otherUser = JOhm.get(User.class, user.getId());
+        assertEquals(1, JOhm.deleteAll(User.class, user.getId()));
+        otherUser.setName("bar");
+        JOhm.save(otherUser);
+        assertEquals(20, JOhm.<User> get(User.class, user.getId()).getAge());
+        assertEquals(1, JOhm.find(User.class, "name", "bar", hashTag).size());
+    }
+
+    @Test
+    public void saveMovesIndexesOfReferencesThatWereNotLoaded() {
+        Country somewhere = new Country();
+        somewhere.setName("somewhere");
+        JOhm.save(somewhere);
+        Country elsewhere = new Country();
+        elsewhere.setName("elsewhere");
+        JOhm.save(elsewhere);
+        Person person = new Person();
+        person.setName("alice");
+        person.setCountry(somewhere);
+        JOhm.save(person);
+
+        Person shallow = JOhm.get(Person.class, person.getId(), FetchPlan.NONE);
+        assertNull(shallow.getCountry());
+        shallow.setCountry(elsewhere);
+        JOhm.save(shallow);
+
+        String member = String.valueOf(person.getId());
+        Jedis jedis = jedisPool.getResource();
+        assertFalse(jedis.sismember("Person:country:name:somewhere", member));
+        assertTrue(jedis.sismember("Person:country:name:elsewhere", member));
+        jedisPool.returnResource(jedis);
+    }
+
+    @Test
+    public void saveWithChildrenQueuesWriteBehindModels() {
+        WriteBehindBuffer buffer = new WriteBehindBuffer(100, 10, 1,
+                TimeUnit.HOURS, WriteBehindBuffer.Backpressure.BLOCK);
+        JOhm.setWriteBehind(Country.class, buffer);
+        try {
+            Country country = new Country();
+            country.setName("somewhere");
+            Person alice = new Person();
+            alice.setName("alice");
+            alice.setCountry(country);
+
+            JOhm.save(alice, true);
+            assertNotNull(country.getId());
+            assertEquals(1, buffer.pendingCount());
+            assertNull(JOhm.get(Country.class, country.getId()));
+            assertEquals("alice", JOhm.<Person> get(Person.class,
+                    alice.getId()).getName());
+
+            buffer.flush();
+            assertEquals("somewhere", JOhm.<Person> get(Person.class,
+                    alice.getId(), FetchPlan.ALL).getCountry().getName());
+        } finally {
+            JOhm.setWriteBehind(Country.class, null);
+            buffer.shutdown();
+        }
+    }
+
+    @Test
+    public void saveAfterExpiryWritesTheWholeModel() throws InterruptedException {
+        Token token = new Token();
+        token.setOwner("foo");
+        token.setValue("first");
+        JOhm.save(token);
+        Token loaded = JOhm.get(Token.class, token.getId());
+
+        Thread.sleep(2100);
+        assertEquals(1, new ExpirySweeper(Token.class, 1000, 2).sweep());
+        loaded.setValue("second");
+        JOhm.save(loaded);
+
+        String member = String.valueOf(token.getId());
+        Jedis jedis = jedisPool.getResource();
+        Map<String, String> hash = jedis.hgetAll("Token:" + member);
+        assertEquals("foo", hash.get("owner"));
+        assertEquals("second", hash.get("value"));
+        assertTrue(jedis.sismember("Token:owner:foo", member));
+        assertTrue(jedis.sismember("Token:all", member));
+        jedisPool.returnResource(jedis);
+    }
+}
@@ -238,4 +238,23 @@ public class CollectionsDataTypeTest extends JOhmTestBase {
         assertTrue(Arrays.asList(savedDistro.getBuildTools()).contains(rake));
         assertTrue(Arrays.asList(savedDistro.getBuildTools()).contains(make));
     }
+
+    @Test
+    public void arrayKeepsThePositionsOfNullElements() {
+        Distribution distro = new Distribution();
+        distro.setDistroScope("World");
+        String[] planetNames = { "Mercury", null, "", "\\Venus", "Earth" };
+        distro.setPlanetNames(planetNames);
+        JOhm.save(distro);
+
+        Distribution savedDistro = JOhm.get(Distribution.class, distro.getId());
+        assertEquals("Mercury", savedDistro.getPlanetNames()[0]);
+        assertNull(savedDistro.getPlanetNames()[1]);
+        // Neither is taken for a null element
+        assertEquals("", savedDistro.getPlanetNames()[2]);
+        assertEquals("\\Venus", savedDistro.getPlanetNames()[3]);
+        assertEquals("Earth", savedDistro.getPlanetNames()[4]);
+        assertEquals(1, JOhm.find(Distribution.class, "planetNames", "Earth",
+                null).size());
+    }
 }
\ No newline at end of file
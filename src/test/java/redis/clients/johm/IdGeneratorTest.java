@@ -0,0 +1,109 @@
+package redis.clients.johm;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Test;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.johm.models.Country;
+
+public class IdGeneratorTest extends JOhmTestBase {
+    @After
+    public void resetIdGenerators() {
+        JOhm.setIdGenerator(Country.class, null);
+        JOhm.setIdGenerator(null);
+    }
+
+    @Test
+    public void blockIdGeneratorReservesIdsInBlocks() {
+        JOhm.setIdGenerator(Country.class, new BlockIdGenerator(10));
+        for (int i = 1; i <= 12; i++) {
+            Country country = new Country();
+            country.setName("country" + i);
+            JOhm.save(country);
+            assertEquals(Long.valueOf(i), country.getId());
+        }
+
+        Jedis jedis = jedisPool.getResource();
+        assertEquals("20", jedis.get("Country:id"));
+        jedisPool.returnResource(jedis);
+
+        Country country = new Country();
+        country.setName("elsewhere");
+        JOhm.setIdGenerator(Country.class, null);
+        JOhm.save(country);
+        assertEquals(Long.valueOf(21), country.getId());
+    }
+
+    @Test
+    public void timeBasedIdGeneratorNeedsNoCounter() {
+        JOhm.setIdGenerator(new TimeBasedIdGenerator(7));
+        Country somewhere = new Country();
+        somewhere.setName("somewhere");
+        JOhm.save(somewhere);
+
+        assertTrue(somewhere.getId() > Integer.MAX_VALUE);
+        Country savedCountry = JOhm.get(Country.class, somewhere.getId());
+        assertEquals("somewhere", savedCountry.getName());
+        Jedis jedis = jedisPool.getResource();
+        assertFalse(jedis.exists("Country:id"));
+        jedisPool.returnResource(jedis);
+    }
+
+    @Test
+    public void timeBasedIdsNeverRepeat() {
+        final long[] now = { TimeBasedIdGenerator.EPOCH + 1000 };
+        TimeBasedIdGenerator generator = new TimeBasedIdGenerator(3) {
+            @Override
+            long currentTimeMillis() {
+                return now[0];
+            }
+        };
+        Set<Long> ids = new HashSet<Long>();
+        long last = 0;
+        for (int i = 0; i < 5000; i++) {
+            long id = generator.nextId(Country.class);
+            assertTrue(id > last);
+            last = id;
+            ids.add(id);
+        }
+        now[0] -= 500;
+        for (int i = 0; i < 100; i++) {
+            long id = generator.nextId(Country.class);
+            assertTrue(id > last);
+            last = id;
+            ids.add(id);
+        }
+        assertEquals(5100, ids.size());
+        assertEquals(3, (last >> 12) & TimeBasedIdGenerator.MAX_WORKER_ID);
+    }
+
+    @Test
+    public void pagesKeepTheOrderOfIdsBeyondDoublePrecision() {
+        // Both ids round to the same double, 1e18
+        final long[] ids = { 1000000000000000000L, 999999999999999999L };
+        final int[] next = { 0 };
+        JOhm.setIdGenerator(Country.class, new IdGenerator() {
+            public long nextId(Class<?> clazz) {
+                return ids[next[0]++];
+            }
+        });
+        for (int i = 0; i < ids.length; i++) {
+            Country country = new Country();
+            country.setName("somewhere");
+            JOhm.save(country);
+        }
+
+        NVField name = new NVField("name", "somewhere");
+        List<String> firstIds = JOhm.find(Country.class, true, Page.first(1),
+                name);
+        List<String> nextIds = JOhm.find(Country.class, true, Page.of(1, 1),
+                name);
+        assertEquals(Arrays.asList("999999999999999999"), firstIds);
+        assertEquals(Arrays.asList("1000000000000000000"), nextIds);
+    }
+}
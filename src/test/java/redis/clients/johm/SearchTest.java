@@ -1,14 +1,20 @@
 package redis.clients.johm;
 
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 
+import redis.clients.jedis.Jedis;
 import redis.clients.johm.NVField.Condition;
 import redis.clients.johm.models.Address;
 import redis.clients.johm.models.Country;
 import redis.clients.johm.models.Item;
+import redis.clients.johm.models.Person;
 import redis.clients.johm.models.User;
 
 public class SearchTest extends JOhmTestBase {
@@ -1091,4 +1097,349 @@ public class SearchTest extends JOhmTestBase {
 		gotUsers=JOhm.find(User.class,false, new NVField("departmentNumber",2), new NVField("age", 88, Condition.GREATERTHANEQUALTO), new NVField("name", "b"));
 		assertEquals(0,gotUsers.size());
 	}
+
+	@Test
+	public void arrayRewriteMovesIndexEntries() {
+		Item item0 = new Item();
+		item0.setName("Foo0");
+		JOhm.save(item0);
+
+		Item item1 = new Item();
+		item1.setName("Foo1");
+		JOhm.save(item1);
+
+		User user = new User();
+		user.setEmployeeNumber(1);
+		user.setDepartmentNumber(2);
+		user.setName("foo");
+		user.setThreeLatestPurchases(new Item[] { item0, item1, item0 });
+		JOhm.save(user);
+		String hashTag = JOhm.getHashTag("employeeNumber", "1");
+		assertEquals(1, JOhm.find(User.class, "threeLatestPurchases", item0.getId(), hashTag).size());
+
+		User savedUser = JOhm.get(User.class, user.getId());
+		Item[] purchases = savedUser.getThreeLatestPurchases();
+		assertEquals(item0.getId(), purchases[0].getId());
+		assertEquals("Foo1", purchases[1].getName());
+		assertEquals(item0.getId(), purchases[2].getId());
+
+		savedUser.setThreeLatestPurchases(new Item[] { item1, item1, item1 });
+		JOhm.save(savedUser);
+		assertEquals(0, JOhm.find(User.class, "threeLatestPurchases", item0.getId(), hashTag).size());
+		assertEquals(1, JOhm.find(User.class, "threeLatestPurchases", item1.getId(), hashTag).size());
+		purchases = JOhm.<User> get(User.class, user.getId()).getThreeLatestPurchases();
+		assertEquals(item1.getId(), purchases[0].getId());
+		assertEquals(item1.getId(), purchases[2].getId());
+	}
+
+	@Test
+	public void findLazyLoadsMatchesPageByPage() {
+		for (int i = 0; i < 25; i++) {
+			Country country = new Country();
+			country.setName(i % 5 == 0 ? "other" : "same");
+			JOhm.save(country);
+		}
+		JOhm.delete(Country.class, 2);
+
+		LazyResults<Country> scanned = JOhm.findLazy(Country.class, "name",
+		    "same", null, FetchPlan.ALL, 3);
+		Set<Long> ids = new HashSet<Long>();
+		for (Country country : scanned) {
+			assertEquals("same", country.getName());
+			ids.add(country.getId());
+		}
+		assertEquals(19, ids.size());
+		assertFalse(ids.contains(Long.valueOf(2)));
+		// Iterating again starts over
+		assertTrue(scanned.iterator().hasNext());
+
+		LazyResults<Country> held = JOhm.findLazy(Country.class, FetchPlan.ALL,
+		    4, new NVField("name", "other"));
+		Iterator<Country> others = held.iterator();
+		int count = 0;
+		while (others.hasNext()) {
+			assertEquals("other", others.next().getName());
+			count++;
+		}
+		assertEquals(5, count);
+
+		held.close();
+		assertFalse(held.iterator().hasNext());
+	}
+
+	@Test
+	public void rangeAndNotEqualsAreEvaluatedInRedis() {
+		for (int i = 0; i < 10; i++) {
+			User user = new User();
+			user.setEmployeeNumber(i);
+			user.setDepartmentNumber(2);
+			user.setName("user" + i);
+			user.setAge(20 + i);
+			user.setSalary(1000f * (i % 3));
+			JOhm.save(user);
+		}
+
+		List<String> ids = JOhm.find(User.class, true, new NVField(
+		    "departmentNumber", 2), new NVField("age", 22,
+		    Condition.GREATERTHANEQUALTO), new NVField("age", 27,
+		    Condition.LESSTHAN), new NVField("age", 24, Condition.NOTEQUALS));
+		assertEquals(4, ids.size());
+		for (User user : JOhm.<User> get(User.class, toIds(ids))) {
+			assertTrue(user.getAge() >= 22 && user.getAge() < 27);
+			assertTrue(user.getAge() != 24);
+		}
+
+		List<User> users = JOhm.find(User.class, false, new NVField(
+		    "departmentNumber", 2), new NVField("salary", 1000,
+		    Condition.GREATERTHAN), new NVField("age", 25, Condition.LESSTHANEQUALTO));
+		assertEquals(2, users.size());
+		for (User user : users) {
+			assertEquals(2000f, user.getSalary(), 0);
+		}
+
+		// No temporary key is left behind
+		Jedis jedis = jedisPool.getResource();
+		assertTrue(jedis.keys("*_tmp*").isEmpty());
+		jedisPool.returnResource(jedis);
+	}
+
+	private static long[] toIds(List<String> ids) {
+		long[] longIds = new long[ids.size()];
+		for (int i = 0; i < longIds.length; i++) {
+			longIds[i] = Long.parseLong(ids.get(i));
+		}
+		return longIds;
+	}
+
+	@Test
+	public void probingAndIntersectingFindTheSameModels() {
+		for (int i = 0; i < 20; i++) {
+			User user = new User();
+			user.setEmployeeNumber(i);
+			user.setDepartmentNumber(2);
+			user.setName(i % 4 == 0 ? "rare" : "common");
+			user.setAge(20 + i);
+			user.setSalary(1000f * (i % 3));
+			JOhm.save(user);
+		}
+		NVField[] query = new NVField[] { new NVField("departmentNumber", 2),
+		    new NVField("name", "rare"),
+		    new NVField("age", 24, Condition.GREATERTHANEQUALTO),
+		    new NVField("salary", 0f, Condition.NOTEQUALS) };
+
+		int probeLimit = JOhm.getFindProbeLimit();
+		try {
+			JOhm.setFindProbeLimit(0);
+			Set<String> intersected = new HashSet<String>(JOhm.<String> find(
+			    User.class, true, query));
+			JOhm.setFindProbeLimit(1000);
+			Set<String> probed = new HashSet<String>(JOhm.<String> find(
+			    User.class, true, query));
+			// employeeNumber 4, 8 and 16, not 12 whose salary is 0
+			assertEquals(3, intersected.size());
+			assertEquals(intersected, probed);
+
+			assertEquals(0, JOhm.find(User.class, true, new NVField(
+			    "departmentNumber", 2), new NVField("name", "nobody"), new NVField(
+			    "age", 24, Condition.GREATERTHANEQUALTO)).size());
+		} finally {
+			JOhm.setFindProbeLimit(probeLimit);
+		}
+	}
+
+	@Test
+	public void concurrentSearchesKeepTheirOwnTemporaryKeys()
+	    throws InterruptedException {
+		for (int i = 0; i < 30; i++) {
+			User user = new User();
+			user.setEmployeeNumber(i);
+			user.setDepartmentNumber(2);
+			user.setName(i % 2 == 0 ? "even" : "odd");
+			user.setAge(20 + i);
+			JOhm.save(user);
+		}
+		int probeLimit = JOhm.getFindProbeLimit();
+		JOhm.setFindProbeLimit(0);
+		try {
+			final AtomicInteger wrong = new AtomicInteger();
+			Thread[] searchers = new Thread[8];
+			for (int t = 0; t < searchers.length; t++) {
+				searchers[t] = new Thread(new Runnable() {
+					public void run() {
+						for (int i = 0; i < 20; i++) {
+							List<String> ids = JOhm.find(User.class, true, new NVField(
+							    "departmentNumber", 2), new NVField("name", "even"),
+							    new NVField("age", 30, Condition.GREATERTHANEQUALTO));
+							if (ids.size() != 10) {
+								wrong.incrementAndGet();
+							}
+						}
+					}
+				});
+				searchers[t].start();
+			}
+			for (Thread searcher : searchers) {
+				searcher.join();
+			}
+			assertEquals(0, wrong.get());
+		} finally {
+			JOhm.setFindProbeLimit(probeLimit);
+		}
+
+		Jedis jedis = jedisPool.getResource();
+		String fresh = TemporaryKeys.name(User.class, "inter", Arrays
+		    .asList("User:{departmentNumber_2}:name:even"));
+		assertTrue(fresh.startsWith("User:_tmp:{departmentNumber_2}:inter:"));
+		jedis.sadd(fresh, "1");
+		jedis.sadd("User:_tmp:inter:1000:leaked-1", "1");
+		assertEquals(1, new TemporaryKeyReaper().reap());
+		assertTrue(jedis.exists(fresh));
+		assertFalse(jedis.exists("User:_tmp:inter:1000:leaked-1"));
+		jedisPool.returnResource(jedis);
+	}
+
+	@Test
+	public void queryCacheIsInvalidatedByTheFieldsItSearched() {
+		for (int i = 0; i < 4; i++) {
+			User user = new User();
+			user.setEmployeeNumber(i);
+			user.setDepartmentNumber(3);
+			user.setName(i < 2 ? "cached" : "other");
+			user.setSalary(100f);
+			JOhm.save(user);
+		}
+		QueryCache queryCache = new QueryCache(100);
+		JOhm.setQueryCache(queryCache);
+		try {
+			NVField department = new NVField("departmentNumber", 3);
+			NVField name = new NVField("name", "cached");
+			assertEquals(2, JOhm.find(User.class, true, department, name).size());
+			assertEquals(2, JOhm.find(User.class, true, name, department).size());
+			assertEquals(1, queryCache.stats().hitCount());
+
+			// A field the search does not look at leaves the entry current
+			List<User> cached = JOhm.find(User.class, false, department, name);
+			User user = cached.get(0);
+			user.setSalary(200f);
+			JOhm.save(user);
+			assertEquals(2, JOhm.find(User.class, true, department, name).size());
+			assertEquals(3, queryCache.stats().hitCount());
+
+			user.setName("other");
+			JOhm.save(user);
+			assertEquals(1, JOhm.find(User.class, true, department, name).size());
+
+			User newcomer = new User();
+			newcomer.setEmployeeNumber(9);
+			newcomer.setDepartmentNumber(3);
+			newcomer.setName("cached");
+			JOhm.save(newcomer);
+			assertEquals(2, JOhm.find(User.class, true, department, name).size());
+
+			JOhm.delete(User.class, newcomer.getId());
+			assertEquals(1, JOhm.find(User.class, true, department, name).size());
+			assertEquals(3, queryCache.stats().hitCount());
+		} finally {
+			JOhm.setQueryCache(null);
+		}
+	}
+
+	@Test
+	public void findReturnsOnlyTheRequestedPage() {
+		for (int i = 0; i < 7; i++) {
+			User user = new User();
+			user.setEmployeeNumber(i);
+			user.setDepartmentNumber(5);
+			user.setName(i % 2 == 0 ? "even" : "odd");
+			// Ages do not follow the ids
+			user.setAge(26 - i);
+			JOhm.save(user);
+		}
+		NVField department = new NVField("departmentNumber", 5);
+
+		List<User> youngest = JOhm.find(User.class, FetchPlan.NONE, Page.of(2, 3)
+		    .orderBy("age", Page.Order.ASC), department);
+		assertEquals(3, youngest.size());
+		assertEquals(22, youngest.get(0).getAge());
+		assertEquals(23, youngest.get(1).getAge());
+		assertEquals(24, youngest.get(2).getAge());
+
+		List<User> oldest = JOhm.find(User.class, false, Page.first(2).orderBy(
+		    "age", Page.Order.DESC), department, new NVField("name", "even"),
+		    new NVField("age", 21, Condition.GREATERTHAN));
+		assertEquals(2, oldest.size());
+		assertEquals(26, oldest.get(0).getAge());
+		assertEquals(24, oldest.get(1).getAge());
+
+		List<String> firstIds = JOhm.find(User.class, true, Page.of(0, 4),
+		    department);
+		List<String> nextIds = JOhm.find(User.class, true, Page.of(4, 4),
+		    department);
+		assertEquals(4, firstIds.size());
+		assertEquals(3, nextIds.size());
+		Set<String> allIds = new HashSet<String>(firstIds);
+		allIds.addAll(nextIds);
+		assertEquals(7, allIds.size());
+		for (int i = 1; i < firstIds.size(); i++) {
+			assertTrue(Long.parseLong(firstIds.get(i - 1)) < Long
+			    .parseLong(firstIds.get(i)));
+		}
+		assertTrue(Long.parseLong(firstIds.get(3)) < Long.parseLong(nextIds
+		    .get(0)));
+	}
+
+	@Test
+	public void queryCacheSeesIndexesMovedWithoutTheirField() {
+		Country country = new Country();
+		country.setName("somewhere");
+		JOhm.save(country);
+		Person person = new Person();
+		person.setName("alice");
+		person.setCountry(country);
+		JOhm.save(person);
+		QueryCache queryCache = new QueryCache(100);
+		JOhm.setQueryCache(queryCache);
+		try {
+			Person loaded = JOhm.get(Person.class, person.getId());
+			country.setName("elsewhere");
+			JOhm.save(country);
+			NVField countryName = new NVField("country", "name", "elsewhere");
+			assertEquals(0, JOhm.find(Person.class, true, countryName).size());
+
+			// Only the name changes in the hash, the country index moves too
+			loaded.setName("bob");
+			loaded.setCountry(country);
+			JOhm.save(loaded);
+			assertEquals(1, JOhm.find(Person.class, true, countryName).size());
+		} finally {
+			JOhm.setQueryCache(null);
+		}
+	}
+
+	@Test
+	public void orderedPagesLeaveOutMatchesWithoutTheField() {
+		Address third = new Address();
+		third.setStreetName("Elm");
+		third.setHouseNumber(3);
+		JOhm.save(third);
+		Address unnumbered = new Address();
+		unnumbered.setStreetName("Elm");
+		JOhm.save(unnumbered);
+		Address first = new Address();
+		first.setStreetName("Elm");
+		first.setHouseNumber(1);
+		JOhm.save(first);
+		NVField street = new NVField("streetName", "Elm");
+
+		List<Address> numbered = JOhm.find(Address.class, FetchPlan.NONE, Page
+		    .first(10).orderBy("houseNumber", Page.Order.ASC), street);
+		assertEquals(2, numbered.size());
+		assertEquals(first.getId(), numbered.get(0).getId());
+		assertEquals(third.getId(), numbered.get(1).getId());
+
+		List<Address> all = JOhm.find(Address.class, FetchPlan.NONE, Page
+		    .first(10), street);
+		assertEquals(3, all.size());
+		assertEquals(unnumbered.getId(), all.get(1).getId());
+	}
 }
\ No newline at end of file
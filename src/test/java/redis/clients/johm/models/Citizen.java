@@ -0,0 +1,38 @@
+package redis.clients.johm.models;
+
+import redis.clients.johm.Attribute;
+import redis.clients.johm.FetchType;
+import redis.clients.johm.Id;
+import redis.clients.johm.LazyReference;
+import redis.clients.johm.Model;
+import redis.clients.johm.Reference;
+
+@Model
+public class Citizen {
+    @Id
+    private Long id;
+    @Attribute
+    private String name;
+    @Reference(fetch = FetchType.LAZY)
+    private LazyReference<Country> country;
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public LazyReference<Country> getCountry() {
+        return country;
+    }
+
+    public void setCountry(Country country) {
+        this.country = LazyReference.of(country);
+    }
+}
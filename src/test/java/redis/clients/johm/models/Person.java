@@ -0,0 +1,50 @@
+package redis.clients.johm.models;
+
+import redis.clients.johm.Attribute;
+import redis.clients.johm.Id;
+import redis.clients.johm.Indexed;
+import redis.clients.johm.Model;
+import redis.clients.johm.Reference;
+
+@Model
+public class Person {
+    @Id
+    private Long id;
+    @Attribute
+    @Indexed
+    private String name;
+    @Reference
+    @Indexed
+    private Person friend;
+    @Reference
+    @Indexed
+    private Country country;
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public Person getFriend() {
+        return friend;
+    }
+
+    public void setFriend(Person friend) {
+        this.friend = friend;
+    }
+
+    public Country getCountry() {
+        return country;
+    }
+
+    public void setCountry(Country country) {
+        this.country = country;
+    }
+}